@@ -37,6 +37,17 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
 
     private int batchSize = DEFAULT_BATCH_SIZE;
 
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private long countCacheTtl = 0L;
+
+    private long resultCacheTtl = 0L;
+
+    /** 事务中有未提交的写入 */
+    private boolean pendingWrites = false;
+
     protected AbstractDao(final Class<ID> keyClass, final Class<T> entityClass) {
         this.keyClass    = keyClass;
         this.entityClass = entityClass;
@@ -90,6 +101,7 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
         EntityManager em = getEntityManager();
         EntityTransaction transaction = em.getTransaction();
         transaction.commit();
+        endTransaction();
         transaction.begin();
     }
 
@@ -98,6 +110,7 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
         EntityManager em = getEntityManager();
         EntityTransaction transaction = em.getTransaction();
         transaction.rollback();
+        endTransaction();
         transaction.begin();
     }
 
@@ -132,6 +145,8 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
     }
 
     public boolean executeNativeSQL(String sql) {
+        invalidateCount();
+        invalidateCache(null);
         Connection conn = getConnection();
         Statement stmt = null;
         boolean ret = false;
@@ -163,6 +178,111 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
         this.batchSize = size;
     }
 
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize(int size) {
+        this.fetchSize = size;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public void setChunkSize(int size) {
+        this.chunkSize = size;
+    }
+
+    @Override
+    public long getCountCacheTtl() {
+        return countCacheTtl;
+    }
+
+    @Override
+    public void setCountCacheTtl(long ttl) {
+        this.countCacheTtl = ttl;
+    }
+
+    @Override
+    public long getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    @Override
+    public void setResultCacheTtl(long ttl) {
+        this.resultCacheTtl = ttl;
+    }
+
+    /**
+     * 清除该实体类型的总记录数和查询结果缓存
+     */
+    protected void invalidateCount() {
+        CountCache.invalidate(entityClass);
+        ResultCache.invalidate(entityClass);
+        if (!pendingWrites) {
+            final EntityManager em = getEntityManager();
+            pendingWrites = em != null && em.isJoinedToTransaction();
+        }
+    }
+
+    /**
+     * 是否可使用总记录数和查询结果缓存
+     * 事务中有未提交的写入时不读取也不保存缓存，事务在DAO外结束后再次清除缓存
+     */
+    protected boolean isCacheable() {
+        if (pendingWrites && !getEntityManager().isJoinedToTransaction()) {
+            endTransaction();
+        }
+        return !pendingWrites;
+    }
+
+    /**
+     * 事务结束后再次清除写入前读取的缓存
+     */
+    private void endTransaction() {
+        if (pendingWrites) {
+            pendingWrites = false;
+            CountCache.invalidate(entityClass);
+            ResultCache.invalidate(entityClass);
+        }
+    }
+
+    /**
+     * 从该实体类型的缓存中删除实体对象
+     *
+     * @param id
+     *            ID, 为null时清除该实体类型的缓存
+     */
+    protected void invalidateCache(Object id) {
+        if (id != null) {
+            EntityCache.evict(entityClass, id);
+        } else {
+            EntityCache.clear(entityClass);
+        }
+    }
+
+    private void invalidateEntity(final T entity) {
+        if (EntityCache.isEnabled(entityClass)) {
+            invalidateCache(getIdentifier(entity));
+        }
+    }
+
+    /**
+     * 缓存的实体对象为分离状态，删除前合并
+     */
+    private T attached(final T entity) {
+        final EntityManager em = getEntityManager();
+        if (EntityCache.isEnabled(entityClass) && !em.contains(entity)) {
+            return em.merge(entity);
+        }
+        return entity;
+    }
+
     @Override
     public void refresh(T entity) {
         if (entity != null) {
@@ -220,6 +340,7 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
     }
 
     protected void persist(final T entity) {
+        invalidateCount();
         getEntityManager().persist(entity);
     }
 
@@ -229,18 +350,24 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
     }
 
     protected T merge(final T e) {
+        invalidateCount();
+        invalidateEntity(e);
         return getEntityManager().merge(e);
     }
 
     @Override
     public void remove(T entity) {
         if (entity != null) {
-            getEntityManager().remove(entity);
+            invalidateCount();
+            invalidateEntity(entity);
+            getEntityManager().remove(attached(entity));
         }
     }
 
     @Override
     public int removeAll() {
+        invalidateCount();
+        invalidateCache(null);
         final StringBuffer queryString =
                 new StringBuffer("DELETE  FROM ");
         queryString.append(entityClass.getSimpleName());
@@ -251,6 +378,8 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
 
     @Override
     public boolean deleteById(final ID id) {
+        invalidateCount();
+        invalidateCache(id);
         final EntityManager em = getEntityManager();
         T e = em.getReference(entityClass, id);
         if(null != e) {
@@ -262,7 +391,9 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
 
     @Override
     public void delete(final T e) {
-        getEntityManager().remove(e);
+        invalidateCount();
+        invalidateEntity(e);
+        getEntityManager().remove(attached(e));
     }
 
     @Override
@@ -273,6 +404,14 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
     @Override
     public Optional<T> find(ID id, LockModeType lockModeType) {
         T t = null;
+        // Locked finds read the database
+        final EntityCache cache = (id != null && lockModeType == null) ? EntityCache.get(entityClass) : null;
+        if (cache != null) {
+            t = cache.get(id, entityClass);
+            if (t != null) {
+                return Optional.of(t);
+            }
+        }
         if (id != null) {
             if (lockModeType != null) {
                 t = getEntityManager().find(entityClass, id, lockModeType);
@@ -281,6 +420,10 @@ public  abstract class AbstractDao<T, ID extends Serializable> implements IDao<T
             }
         }
         if (t != null) {
+            // The entities of a transaction may hold its uncommitted changes
+            if (cache != null && !getEntityManager().isJoinedToTransaction()) {
+                cache.put(id, t);
+            }
             return Optional.of(t);
         }
         return Optional.empty();
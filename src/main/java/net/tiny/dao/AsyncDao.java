@@ -0,0 +1,223 @@
+package net.tiny.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+/**
+ * Asynchronous DAO, the calls return a {@link CompletableFuture} completed on an executor.
+ * <p>
+ * Every call runs on its own entity manager with a DAO created for it, and the writes run in
+ * their own transaction. So the entities of a result are detached, and the calls of one
+ * facade run concurrently: the list and the count of a page are two queries on two
+ * connections. The number of entity managers open at once is bounded by the connections of
+ * the facade, so the executor can be unbounded, as the virtual threads of Java 21.
+ */
+public class AsyncDao<T, ID extends Serializable> implements AutoCloseable {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Function<EntityManager, IDao<T, ID>> daos;
+    private final ExecutorService executor;
+    private final boolean shared;
+    private final Semaphore connections;
+
+    /**
+     * @param emf The entity manager factory
+     * @param keyType The ID class
+     * @param entityType The entity class
+     * @param connections The maximum number of calls running at once
+     */
+    public AsyncDao(EntityManagerFactory emf, Class<ID> keyType, Class<T> entityType, int connections) {
+        this(emf, em -> Dao.getDao(em, keyType, entityType), newExecutor(connections), false, connections);
+    }
+
+    /**
+     * @param emf The entity manager factory
+     * @param daos The DAO of an entity manager
+     * @param executor The executor of the calls, not shut down by this DAO
+     * @param connections The maximum number of calls running at once
+     */
+    public AsyncDao(EntityManagerFactory emf, Function<EntityManager, IDao<T, ID>> daos, ExecutorService executor, int connections) {
+        this(emf, daos, executor, true, connections);
+    }
+
+    private AsyncDao(EntityManagerFactory emf, Function<EntityManager, IDao<T, ID>> daos, ExecutorService executor,
+            boolean shared, int connections) {
+        this.entityManagerFactory = emf;
+        this.daos = daos;
+        this.executor = executor;
+        this.shared = shared;
+        this.connections = new Semaphore(Math.max(1, connections));
+    }
+
+    /**
+     * A virtual thread per task on Java 21 and later, else a pool of threads.
+     *
+     * @param threads The number of threads of the pool
+     */
+    public static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(1, threads),
+                    new ParallelSeparatedIterator.ParserThreadFactory("dao-async"));
+        }
+    }
+
+    /**
+     * Runs a read on its own entity manager.
+     *
+     * @param work The read
+     */
+    public <R> CompletableFuture<R> read(Function<IDao<T, ID>, R> work) {
+        return CompletableFuture.supplyAsync(() -> execute(work, false), executor);
+    }
+
+    /**
+     * Runs a write in its own transaction, rolled back when the write fails.
+     *
+     * @param work The write
+     */
+    public <R> CompletableFuture<R> write(Function<IDao<T, ID>, R> work) {
+        return CompletableFuture.supplyAsync(() -> execute(work, true), executor);
+    }
+
+    public CompletableFuture<Optional<T>> find(ID id) {
+        return read(dao -> dao.find(id));
+    }
+
+    public CompletableFuture<List<T>> findList(Collection<ID> ids) {
+        return read(dao -> dao.findList(ids));
+    }
+
+    public CompletableFuture<List<T>> findList(Integer first, Integer count, List<Filter> filters, List<Order> orders) {
+        return read(dao -> dao.findList(first, count, filters, orders));
+    }
+
+    public CompletableFuture<Long> count(Filter... filters) {
+        return read(dao -> dao.count(filters));
+    }
+
+    public CompletableFuture<Long> count(Pageable pageable) {
+        return read(dao -> dao.count(pageable));
+    }
+
+    /**
+     * Reads the content and the total of a page concurrently.
+     * A page after the last one is read again at the last page when the total is known, a
+     * lazy total is counted when the page asks for it. Keyset pages are read in one call.
+     *
+     * @param pageable The page
+     */
+    public CompletableFuture<Page<T>> findPage(Pageable pageable) {
+        final Pageable request = (null == pageable) ? new Pageable() : pageable;
+        if (request.isKeyset()) {
+            return read(dao -> {
+                Page<T> page = dao.findPage(request);
+                if (request.isLazyTotal()) {
+                    return new Page<T>(page.getContent(), () -> count(request).join(), request, page.getCursor());
+                }
+                return page;
+            });
+        }
+        final CompletableFuture<List<T>> content = read(dao -> dao.findPage(copy(request, true)).getContent());
+        if (request.isLazyTotal()) {
+            return content.thenApply(list -> new Page<T>(list, () -> count(request).join(), request, null));
+        }
+        final Pageable counted = copy(request, false);
+        return content.thenCombine(count(counted), (list, total) -> {
+            int lastPage = Math.max(1, (int) Math.ceil((double) total / (double) request.getPageSize()));
+            return lastPage < request.getPageNumber() ? null : new Page<T>(list, total, request);
+        }).thenCompose(page -> null != page ? CompletableFuture.completedFuture(page) : read(dao -> dao.findPage(request)));
+    }
+
+    public CompletableFuture<T> insert(T entity) {
+        return write(dao -> {
+            dao.insert(entity);
+            return entity;
+        });
+    }
+
+    public CompletableFuture<T> update(T entity) {
+        return write(dao -> dao.update(entity));
+    }
+
+    public CompletableFuture<Boolean> deleteById(ID id) {
+        return write(dao -> dao.deleteById(id));
+    }
+
+    /**
+     * Shuts down the executor created by this DAO.
+     */
+    @Override
+    public void close() {
+        if (!shared) {
+            executor.shutdown();
+        }
+    }
+
+    private <R> R execute(Function<IDao<T, ID>, R> work, boolean transactional) {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new PersistenceException(e.getMessage(), e));
+        }
+        try {
+            final EntityManager em = entityManagerFactory.createEntityManager();
+            try {
+                final IDao<T, ID> dao = daos.apply(em);
+                if (!transactional) {
+                    return work.apply(dao);
+                }
+                final EntityTransaction transaction = em.getTransaction();
+                transaction.begin();
+                try {
+                    R result = work.apply(dao);
+                    transaction.commit();
+                    // Drop the counts and results read by the other calls before the commit
+                    CountCache.invalidate(dao.getEntityType());
+                    ResultCache.invalidate(dao.getEntityType());
+                    return result;
+                } finally {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                }
+            } finally {
+                em.close();
+            }
+        } finally {
+            connections.release();
+        }
+    }
+
+    // The pageable of a request is not shared across threads
+    private static Pageable copy(Pageable pageable, boolean lazyTotal) {
+        final Pageable copy = new Pageable(pageable.getPageNumber(), pageable.getPageSize());
+        copy.setSearchProperty(pageable.getSearchProperty());
+        copy.setSearchValue(pageable.getSearchValue());
+        copy.setOrderProperty(pageable.getOrderProperty());
+        copy.setOrderDirection(pageable.getOrderDirection());
+        copy.setFilters(null == pageable.getFilters() ? null : new ArrayList<Filter>(pageable.getFilters()));
+        copy.setOrders(null == pageable.getOrders() ? null : new ArrayList<Order>(pageable.getOrders()));
+        copy.setKeyset(pageable.isKeyset());
+        copy.setCursor(pageable.getCursor());
+        copy.setEstimatedTotal(pageable.isEstimatedTotal());
+        copy.setLazyTotal(lazyTotal);
+        return copy;
+    }
+}
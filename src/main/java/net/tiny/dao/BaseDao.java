@@ -1,6 +1,10 @@
 package net.tiny.dao;
 
 import java.io.Serializable;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -9,10 +13,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import javax.persistence.Column;
 import javax.persistence.EntityManager;
 import javax.persistence.FlushModeType;
+import javax.persistence.Query;
 import javax.persistence.Table;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -21,11 +32,14 @@ import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Fetch;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
 
 import net.tiny.dao.entity.OrderEntity;
 
@@ -36,11 +50,6 @@ import net.tiny.dao.entity.OrderEntity;
  */
 public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T, ID> {
 
-    /** 别名数 */
-    private static final long MAX_ALIAS_COUNT = 1000L;
-
-    private static volatile long aliasCount = 0L;
-
     public BaseDao() {
         super();
     }
@@ -93,20 +102,43 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         return savedEntities;
     }
 
+    @Override
+    public BulkResult<ID> insertAll(Iterator<T> entities) {
+        final EntityManager em = getEntityManager();
+        final String table = getTableName();
+        final BatchInserter<T> inserter = new BatchInserter<T>(em.getMetamodel(),
+                em.getEntityManagerFactory().getPersistenceUnitUtil(), entityClass, table);
+        if (em.isJoinedToTransaction()) {
+            // Write the pending changes before the batches
+            em.flush();
+        }
+        invalidateCount();
+        final List<ID> keys = new ArrayList<ID>();
+        final long st = System.currentTimeMillis();
+        inserter.insert(getConnection(), entities, getBatchSize(), e -> keys.add(getIdentifier(e)));
+        return new BulkResult<ID>(table, keys, System.currentTimeMillis() - st);
+    }
+
     @Override
     public int delete(String name, final Map<String, Object> where) {
+        invalidateCount();
+        invalidateCache(null);
         TypedQuery<T> query = getNamedQuery(name, where);
         return query.setFlushMode(FlushModeType.COMMIT).executeUpdate();
     }
 
     @Override
     public int delete(String name, final Object[] args) {
+        invalidateCount();
+        invalidateCache(null);
         TypedQuery<T> query = getNamedQuery(name, args);
         return query.setFlushMode(FlushModeType.COMMIT).executeUpdate();
     }
 
     @Override
     public int deleteAll(Iterator<T> entities) {
+        invalidateCount();
+        invalidateCache(null);
         int count = 0;
         EntityManager em = getEntityManager();
         while(entities.hasNext()) {
@@ -123,6 +155,8 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
 
     @Override
     public int remove(List<T> entities) {
+        invalidateCount();
+        invalidateCache(null);
         int count = 0;
         EntityManager em = getEntityManager();
         for(T e : entities) {
@@ -146,10 +180,29 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
 
     @Override
     public List<T> findList(Integer first, Integer count, List<Filter> filters,	List<Order> orders) {
-        CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(entityClass);
-        criteriaQuery.select(criteriaQuery.from(entityClass));
-        return findList(criteriaQuery, first, count, filters, orders);
+        final long ttl = isCacheable() ? getResultCacheTtl() : 0L;
+        final String resultKey = ttl > 0L ? ResultCache.key(first, count, filters, orders) : null;
+        final long generation = ttl > 0L ? ResultCache.generation(entityClass) : 0L;
+        if (resultKey != null) {
+            ResultCache.Entry cached = ResultCache.get(entityClass, resultKey);
+            if (cached != null) {
+                return findCachedList(cached);
+            }
+        }
+        final QueryPlan plan = getQueryPlan(null, filters, orders);
+        TypedQuery<T> query = plan.bind(getEntityManager().createQuery(plan.getSelect(), entityClass), null, filters);
+        query.setFlushMode(FlushModeType.COMMIT);
+        if (first != null) {
+            query.setFirstResult(first);
+        }
+        if (count != null) {
+            query.setMaxResults(count);
+        }
+        final List<T> list = query.getResultList();
+        if (resultKey != null) {
+            ResultCache.put(entityClass, resultKey, generation, getIdentifiers(list), -1L, 0, ttl);
+        }
+        return list;
     }
 
     public List<T> findList(Collection<ID> ids, List<Filter> filters, List<Order> orders) {
@@ -164,43 +217,196 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         return findList(criteriaQuery, 0, ids.size(), filters, orders);
     }
 
+    @Override
+    public List<T> findList(Collection<ID> ids) {
+        return findList(ids, 1);
+    }
+
+    @Override
+    public List<T> findList(Collection<ID> ids, int parallelism) {
+        return MultiGet.find(getEntityManager(), entityClass, ids, getChunkSize(), parallelism);
+    }
+
     @Override
     public Page<T> findPage(Pageable pageable) {
-        CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(entityClass);
-        criteriaQuery.select(criteriaQuery.from(entityClass));
-        return findPage(criteriaQuery, pageable);
+        if (pageable == null || pageable.isKeyset()) {
+            CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
+            CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(entityClass);
+            criteriaQuery.select(criteriaQuery.from(entityClass));
+            return findPage(criteriaQuery, pageable);
+        }
+        final EntityManager em = getEntityManager();
+        final List<Filter> filters = pageable.getFilters();
+        String searchProperty = null;
+        String searchValue = null;
+        if (isNotEmpty(pageable.getSearchProperty()) && isNotEmpty(pageable.getSearchValue())) {
+            searchProperty = pageable.getSearchProperty();
+            searchValue = pageable.getSearchValue();
+        }
+        final List<Order> orders = getOrders(pageable);
+        final long ttl = isCacheable() ? getResultCacheTtl() : 0L;
+        final String resultKey = ttl > 0L ? ResultCache.key(pageable, orders) : null;
+        final long generation = ttl > 0L ? ResultCache.generation(entityClass) : 0L;
+        ResultCache.Entry cached = null;
+        if (resultKey != null) {
+            cached = ResultCache.get(entityClass, resultKey);
+        }
+        final QueryPlan plan = getQueryPlan(searchProperty, filters, orders);
+        final String search = searchValue;
+        final LongSupplier total = getTotal(plan, search, pageable);
+        if (cached != null) {
+            pageable.setPageNumber(cached.pageNumber);
+            if (cached.total < 0L) {
+                return new Page<T>(findCachedList(cached), total, pageable, null);
+            }
+            return new Page<T>(findCachedList(cached), cached.total, pageable);
+        }
+        TypedQuery<T> query = plan.bind(em.createQuery(plan.getSelect(), entityClass), search, filters);
+        final Page<T> page = getPage(query, total, pageable);
+        if (resultKey != null) {
+            ResultCache.put(entityClass, resultKey, generation, getIdentifiers(page.getContent()),
+                    pageable.isLazyTotal() ? -1L : page.getTotal(), pageable.getPageNumber(), ttl);
+        }
+        return page;
     }
 
     @Override
-    public Iterator<T> findAll() {
-        return selectAll().iterator();
+    public List<Object[]> findProjection(List<String> properties, Integer first, Integer count, List<Filter> filters, List<Order> orders) {
+        return findProjection(Object[].class, properties, first, count, filters, orders);
     }
 
     @Override
-    public Iterator<T> find(final Map<String, Object> whereParams, final Map<String, Object> orderParams) {
-        return select(whereParams, orderParams).iterator();
+    public <R> List<R> findProjection(Class<R> type, List<String> properties, Integer first, Integer count, List<Filter> filters, List<Order> orders) {
+        final QueryPlan plan = getQueryPlan(null, filters, orders);
+        final Query query = createProjectionQuery(plan, type, properties, null, filters);
+        if (first != null) {
+            query.setFirstResult(first);
+        }
+        if (count != null) {
+            query.setMaxResults(count);
+        }
+        return getProjections(type, properties, query.getResultList());
     }
 
     @Override
-    public Iterator<T> find(final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max) {
-        return select(whereParams, orderParams, offset, max).iterator();
+    public Page<Object[]> findProjectionPage(List<String> properties, Pageable pageable) {
+        return findProjectionPage(Object[].class, properties, pageable);
     }
 
     @Override
-    public Stream<T> finds() {
+    public <R> Page<R> findProjectionPage(Class<R> type, List<String> properties, Pageable pageable) {
+        if (pageable == null) {
+            pageable = new Pageable();
+        }
+        String searchProperty = null;
+        String searchValue = null;
+        if (isNotEmpty(pageable.getSearchProperty()) && isNotEmpty(pageable.getSearchValue())) {
+            searchProperty = pageable.getSearchProperty();
+            searchValue = pageable.getSearchValue();
+        }
+        final QueryPlan plan = getQueryPlan(searchProperty, pageable.getFilters(), getOrders(pageable));
+        final Query query = createProjectionQuery(plan, type, properties, searchValue, pageable.getFilters());
+        return getPage(query, getTotal(plan, searchValue, pageable), pageable, list -> getProjections(type, properties, list));
+    }
+
+    /**
+     * 投影查询
+     * 只选择属性值，不生成实体对象
+     */
+    private Query createProjectionQuery(QueryPlan plan, Class<?> type, List<String> properties, String search, List<Filter> filters) {
         final EntityManager em = getEntityManager();
-        final CriteriaQuery<T> query = em.getCriteriaBuilder().createQuery(entityClass);
-        query.from(entityClass);
-        return em.createQuery(query).getResultStream();
+        final String select = plan.getSelect(em.getMetamodel().entity(entityClass), properties, type);
+        return plan.bind(em.createQuery(select), search, filters).setFlushMode(FlushModeType.COMMIT);
+    }
+
+    /**
+     * 投影结果
+     * 单一属性的值转为数组
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> getProjections(Class<R> type, List<String> properties, List<?> results) {
+        if (Object[].class.equals(type) && properties.size() == 1) {
+            final List<Object[]> arrays = new ArrayList<>(results.size());
+            for (Object value : results) {
+                arrays.add(new Object[] { value });
+            }
+            return (List<R>) arrays;
+        }
+        return (List<R>) results;
+    }
+
+    /**
+     * 缓存的查询结果
+     * 按结果ID在持久化上下文中取得实体对象
+     */
+    private List<T> findCachedList(ResultCache.Entry cached) {
+        return MultiGet.find(getEntityManager(), entityClass, Arrays.asList(cached.ids), getChunkSize(), 1);
+    }
+
+    private List<ID> getIdentifiers(List<T> entities) {
+        final List<ID> ids = new ArrayList<ID>(entities.size());
+        for (T entity : entities) {
+            ids.add(getIdentifier(entity));
+        }
+        return ids;
+    }
+
+    @Override
+    public ResultCursor<T> findAll() {
+        return ResultCursor.open(getEntityManager(), createSelectAllQuery(), getFetchSize());
+    }
+
+    @Override
+    public ResultCursor<T> find(final Map<String, Object> whereParams, final Map<String, Object> orderParams) {
+        return find(whereParams, orderParams, -1, -1);
+    }
+
+    @Override
+    public ResultCursor<T> find(final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max) {
+        return ResultCursor.open(getEntityManager(), createSelectQuery(whereParams, orderParams, offset, max), getFetchSize());
+    }
+
+    @Override
+    public Stream<T> finds() {
+        return ResultCursor.open(getEntityManager(), createSelectAllQuery(), getFetchSize()).stream();
+    }
+
+    @Override
+    public ResultPublisher<T> publish() {
+        return new ResultPublisher<T>(getEntityManager().getEntityManagerFactory(),
+                em -> createSelectAllQuery(em), getFetchSize(), null);
+    }
+
+    @Override
+    public ResultPublisher<T> publish(final Map<String, Object> whereParams, final Map<String, Object> orderParams) {
+        return new ResultPublisher<T>(getEntityManager().getEntityManagerFactory(),
+                em -> createSelectQuery(em, whereParams, orderParams, -1, -1), getFetchSize(), null);
+    }
+
+    @Override
+    public long scan(PartitionScan.Mode mode, int partitions, Consumer<? super T> consumer) {
+        return PartitionScan.open(getEntityManager(), entityClass, mode, partitions, getFetchSize())
+                .forEach(partitions, consumer);
+    }
+
+    @Override
+    public Stream<T> scans(PartitionScan.Mode mode, int partitions) {
+        return PartitionScan.open(getEntityManager(), entityClass, mode, partitions, getFetchSize()).stream();
     }
 
     @Override
     public List<T> selectAll() {
-        final EntityManager em = getEntityManager();
+        return createSelectAllQuery().getResultList();
+    }
+
+    private TypedQuery<T> createSelectAllQuery() {
+        return createSelectAllQuery(getEntityManager());
+    }
+
+    private TypedQuery<T> createSelectAllQuery(final EntityManager em) {
         final CriteriaQuery<T> query = em.getCriteriaBuilder().createQuery(entityClass);
         query.from(entityClass);
-        return em.createQuery(query).getResultList();
+        return em.createQuery(query);
     }
 
     @Override
@@ -209,15 +415,18 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
     }
     @Override
     public List<T> select(final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max) {
-        final StringBuffer queryString =
-                new StringBuffer("SELECT e FROM ");
-        queryString.append(entityClass.getSimpleName());
-        queryString.append(" e");
-        if(null != whereParams || null != orderParams) {
-            queryString.append(" ");
-            queryString.append(getQueryClauses(whereParams, orderParams));
-        }
-        TypedQuery<T> query = getEntityManager().createQuery(queryString.toString(), entityClass);
+        return createSelectQuery(whereParams, orderParams, offset, max).getResultList();
+    }
+
+    private TypedQuery<T> createSelectQuery(final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max) {
+        return createSelectQuery(getEntityManager(), whereParams, orderParams, offset, max);
+    }
+
+    private TypedQuery<T> createSelectQuery(final EntityManager em, final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max) {
+        final List<Filter> filters = getFilters(whereParams);
+        final QueryPlan plan = QueryPlan.get(em.getMetamodel().entity(entityClass),
+                null, filters, getOrders(orderParams), null);
+        TypedQuery<T> query = plan.bind(em.createQuery(plan.getSelect(), entityClass), null, filters);
         if(offset > 0) {
             query.setFirstResult(offset);
         }
@@ -226,7 +435,7 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         }
         //query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
         query.setFlushMode(FlushModeType.COMMIT);
-        return query.getResultList();
+        return query;
     }
 
     @Override
@@ -245,10 +454,24 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
 
     @Override
     public long count(Filter... filters) {
-        CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(entityClass);
-        criteriaQuery.select(criteriaQuery.from(entityClass));
-        return count(criteriaQuery, filters != null ? Arrays.asList(filters) : null);
+        final List<Filter> list = filters != null ? Arrays.asList(filters) : null;
+        final QueryPlan plan = getQueryPlan(null, list, null);
+        return plan.bind(getEntityManager().createQuery(plan.getCount(), Long.class), null, list)
+                .setFlushMode(FlushModeType.COMMIT).getSingleResult();
+    }
+
+    @Override
+    public long count(Pageable pageable) {
+        if (pageable == null) {
+            return count();
+        }
+        String searchProperty = null;
+        String searchValue = null;
+        if (isNotEmpty(pageable.getSearchProperty()) && isNotEmpty(pageable.getSearchValue())) {
+            searchProperty = pageable.getSearchProperty();
+            searchValue = pageable.getSearchValue();
+        }
+        return getTotal(getQueryPlan(searchProperty, pageable.getFilters(), null), searchValue, pageable).getAsLong();
     }
 
     @Override
@@ -258,11 +481,16 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
 
     @Override
     public long count(final Map<String, Object> whereParams) {
-        CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
-        criteriaQuery.select(criteriaBuilder.count(criteriaQuery.from(entityClass)));
-        // criteriaQuery.where(/*your stuff*/);
-        return getEntityManager().createQuery(criteriaQuery).getSingleResult();
+        final List<Filter> filters = getFilters(whereParams);
+        final QueryPlan plan = QueryPlan.get(getEntityManager().getMetamodel().entity(entityClass), null, filters, null, null);
+        return plan.bind(getEntityManager().createQuery(plan.getCount(), Long.class), null, filters)
+                .setFlushMode(FlushModeType.COMMIT).getSingleResult();
+    }
+
+    @Override
+    public long estimateCount() {
+        // The connection of the entity manager may only be reached in a transaction
+        return DaoHelper.estimateCount(getEntityManager(), getTableName());
     }
 
     @Override
@@ -277,52 +505,48 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         return (Long) query.getSingleResult();
     }
 
-    private String getQueryClauses(final Map<String, Object> whereParams, final Map<String, Object> orderParams) {
-        final StringBuffer queryString = new StringBuffer();
-        if (whereParams != null && !whereParams.isEmpty()) {
-            queryString.append(" where ");
-            final Iterator<Map.Entry<String, Object>> it = whereParams.entrySet().iterator();
-            while (it.hasNext()) {
-                final Map.Entry<String, Object> entry = it.next();
-                if (entry.getValue() instanceof Boolean) {
-                    queryString.append(entry.getKey());
-                    queryString.append(" is ");
-                    queryString.append(entry.getValue());
-                    queryString.append(" ");
-                } else {
-                    if (entry.getValue() instanceof Number) {
-                        queryString.append(entry.getKey());
-                        queryString.append(" = ");
-                        queryString.append(entry.getValue());
-                    } else {
-                        // string equality
-                        queryString.append(entry.getKey());
-                        queryString.append(" = '");
-                        queryString.append(entry.getValue());
-                        queryString.append("'");
-                    }
-                }
-                if (it.hasNext()) {
-                    queryString.append(" and ");
-                }
+    /**
+     * 条件参数的筛选
+     * 值为null时is null，其他为相等，值作为参数绑定
+     */
+    private static List<Filter> getFilters(final Map<String, Object> whereParams) {
+        final List<Filter> filters = new ArrayList<>();
+        if (whereParams != null) {
+            for (Map.Entry<String, Object> entry : whereParams.entrySet()) {
+                filters.add(null == entry.getValue() ? Filter.isNull(entry.getKey())
+                        : Filter.eq(entry.getKey(), entry.getValue()));
             }
         }
-        if ((orderParams != null) && !orderParams.isEmpty()) {
-            queryString.append(" order by ");
-            final Iterator<Map.Entry<String, Object>> it = orderParams.entrySet().iterator();
-            while (it.hasNext()) {
-                final Map.Entry<String, Object> entry = it.next();
-                queryString.append(entry.getKey());
-                queryString.append(" ");
-                if (entry.getValue() != null) {
-                    queryString.append(entry.getValue());
-                }
-                if (it.hasNext()) {
-                    queryString.append(", ");
-                }
+        return filters;
+    }
+
+    /**
+     * 排序参数的排序
+     * 值为asc或desc，null时为asc
+     */
+    private static List<Order> getOrders(final Map<String, Object> orderParams) {
+        final List<Order> orders = new ArrayList<>();
+        if (orderParams != null) {
+            for (Map.Entry<String, Object> entry : orderParams.entrySet()) {
+                orders.add(new Order(entry.getKey(), null == entry.getValue() ? Order.Direction.asc
+                        : Order.Direction.fromString(entry.getValue().toString())));
             }
         }
-        return queryString.toString();
+        return orders;
+    }
+
+    /**
+     * 分页信息的排序
+     */
+    private List<Order> getOrders(final Pageable pageable) {
+        final List<Order> orders = new ArrayList<Order>();
+        if (isNotEmpty(pageable.getOrderProperty()) && pageable.getOrderDirection() != null) {
+            orders.add(new Order(pageable.getOrderProperty(), pageable.getOrderDirection()));
+        }
+        if (pageable.getOrders() != null) {
+            orders.addAll(pageable.getOrders());
+        }
+        return orders;
     }
 
     // Other common operations
@@ -365,6 +589,10 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
 
     @Override
     public List<T> queryNamed(String name, final Map<String, Object> where, int offset, int max) {
+        return createNamedQuery(name, where, offset, max).getResultList();
+    }
+
+    private TypedQuery<T> createNamedQuery(String name, final Map<String, Object> where, int offset, int max) {
         TypedQuery<T> query = getNamedQuery(name, where);
         if(offset > 0) {
             query.setFirstResult(offset);
@@ -372,21 +600,23 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         if(max > 0) {
             query.setMaxResults(max);
         }
-        return query.getResultList();
+        return query;
     }
 
     @Override
-    public Iterator<T> findNamed(String name, final Map<String, Object> where) {
-        return queryNamed(name, where, -1, -1).iterator();
+    public ResultCursor<T> findNamed(String name, final Map<String, Object> where) {
+        return findNamed(name, where, -1, -1);
     }
 
     @Override
-    public Iterator<T> findNamed(String name, final Map<String, Object> where, int offset, int max) {
-        return queryNamed(name, where, offset, max).iterator();
+    public ResultCursor<T> findNamed(String name, final Map<String, Object> where, int offset, int max) {
+        return ResultCursor.open(getEntityManager(), createNamedQuery(name, where, offset, max), getFetchSize());
     }
 
     @Override
     public int updateNamed(String name, final Map<String, Object> args) {
+        invalidateCount();
+        invalidateCache(null);
         TypedQuery<T> query = getNamedQuery(name, args);
         return query.executeUpdate();
     }
@@ -396,7 +626,10 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         Map<String, Object> args = new HashMap<String, Object>();
         args.put(getIDName(),  id);
         if(1 == updateNamed(name, args)) {
-            return find(id);
+            // The bulk update bypasses the persistence context
+            T e = getEntityManager().find(entityClass, id);
+            refresh(e);
+            return Optional.ofNullable(e);
         } else {
             return Optional.empty();
         }
@@ -440,7 +673,26 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         }
         CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
         Root<T> root = getRoot(criteriaQuery);
+        final boolean plain = criteriaQuery.getRestriction() == null
+                && criteriaQuery.getRoots().size() == 1 && root != null && root.getJoins().isEmpty();
         addRestrictions(criteriaQuery, pageable);
+        LongSupplier total;
+        if (plain) {
+            // The plain entity query is counted by the plan of its filters, cached and estimated as the plan
+            String searchProperty = null;
+            String searchValue = null;
+            if (isNotEmpty(pageable.getSearchProperty()) && isNotEmpty(pageable.getSearchValue())) {
+                searchProperty = pageable.getSearchProperty();
+                searchValue = pageable.getSearchValue();
+            }
+            total = getTotal(getQueryPlan(searchProperty, pageable.getFilters(), null), searchValue, pageable);
+        } else {
+            final TypedQuery<Long> countQuery = createCountTypedQuery(criteriaQuery, null);
+            total = getTotal(() -> countQuery, null);
+        }
+        if (pageable.isKeyset()) {
+            return findKeysetPage(criteriaQuery, pageable, total);
+        }
         addOrders(criteriaQuery, pageable);
         if (criteriaQuery.getOrderList() == null || criteriaQuery.getOrderList().isEmpty()) {
             if (OrderEntity.class.isAssignableFrom(entityClass)) {
@@ -449,26 +701,265 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
                 criteriaQuery.orderBy(criteriaBuilder.desc(root.get(OrderEntity.CREATE_DATE_PROPERTY_NAME)));
             }
         }
-        long total = count(criteriaQuery, null);
-        int totalPages = (int) Math.ceil((double) total / (double) pageable.getPageSize());
+        return getPage(getEntityManager().createQuery(criteriaQuery), total, pageable);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page<T> getPage(TypedQuery<T> query, LongSupplier total, Pageable pageable) {
+        return getPage(query, total, pageable, list -> (List<T>) list);
+    }
+
+    private <R> Page<R> getPage(Query query, LongSupplier total, Pageable pageable, Function<List<?>, List<R>> results) {
+        query.setFlushMode(FlushModeType.COMMIT);
+        if (pageable.isLazyTotal()) {
+            // A page after the last one is empty
+            query.setFirstResult((pageable.getPageNumber() - 1) * pageable.getPageSize());
+            query.setMaxResults(pageable.getPageSize());
+            return new Page<R>(results.apply(query.getResultList()), total, pageable, null);
+        }
+        long count = total.getAsLong();
+        int totalPages = (int) Math.ceil((double) count / (double) pageable.getPageSize());
         if (totalPages < pageable.getPageNumber()) {
             pageable.setPageNumber(totalPages);
         }
-        TypedQuery<T> query = getEntityManager().createQuery(criteriaQuery).setFlushMode(FlushModeType.COMMIT);
         query.setFirstResult((pageable.getPageNumber() - 1) * pageable.getPageSize());
         query.setMaxResults(pageable.getPageSize());
-        return new Page<T>(query.getResultList(), total, pageable);
+        return new Page<R>(results.apply(query.getResultList()), count, pageable);
+    }
+
+    /**
+     * 查询计划的总记录数
+     * 无筛选和搜索时可按数据库统计信息估算
+     */
+    private LongSupplier getTotal(final QueryPlan plan, final String search, final Pageable pageable) {
+        if (pageable.isEstimatedTotal() && !plan.isFiltered()) {
+            return () -> estimateCount();
+        }
+        final EntityManager em = getEntityManager();
+        final List<Filter> filters = pageable.getFilters();
+        return getTotal(() -> plan.bind(em.createQuery(plan.getCount(), Long.class), search, filters),
+                getCountCacheTtl() > 0L ? CountCache.key(pageable) : null);
+    }
+
+    /**
+     * 总记录数
+     * 计数查询在取得前生成，有键时使用缓存的总记录数，事务中有未提交的写入时不使用缓存
+     */
+    private LongSupplier getTotal(final Supplier<TypedQuery<Long>> countQuery, final String countKey) {
+        final long ttl = getCountCacheTtl();
+        return () -> {
+            final boolean cacheable = countKey != null && isCacheable();
+            final long generation = cacheable ? CountCache.generation(entityClass) : 0L;
+            if (cacheable) {
+                Long cached = CountCache.get(entityClass, countKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            long count = countQuery.get().setFlushMode(FlushModeType.COMMIT).getSingleResult();
+            if (cacheable) {
+                CountCache.put(entityClass, countKey, generation, count, ttl);
+            }
+            return count;
+        };
+    }
+
+    /**
+     * 查询计划
+     * 按筛选和排序的形状缓存JPQL，请求时只绑定筛选值
+     */
+    private QueryPlan getQueryPlan(String searchProperty, List<Filter> filters, List<Order> orders) {
+        final Order defaultOrder = OrderEntity.class.isAssignableFrom(entityClass)
+                ? Order.asc(OrderEntity.ORDER_PROPERTY_NAME) : Order.desc(OrderEntity.CREATE_DATE_PROPERTY_NAME);
+        return QueryPlan.get(getEntityManager().getMetamodel().entity(entityClass), searchProperty, filters, orders, defaultOrder);
+    }
+
+    /**
+     * 键集分页
+     * 以游标的排序值为条件取得下页，最后加ID排序保证排序唯一
+     * 可为null的排序属性按null在前排序，null值也作为游标的条件
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Page<T> findKeysetPage(CriteriaQuery<T> criteriaQuery, Pageable pageable, LongSupplier total) {
+        CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
+        Root<T> root = getRoot(criteriaQuery);
+        List<Order> orders = getKeysetOrders(pageable);
+        Member[] members = new Member[orders.size()];
+        Class<?>[] types = new Class<?>[orders.size()];
+        boolean[] nullables = new boolean[orders.size()];
+        EntityType<T> entityType = getEntityManager().getMetamodel().entity(entityClass);
+        for (int i = 0; i < members.length; i++) {
+            Attribute<? super T, ?> attribute = entityType.getAttribute(orders.get(i).getProperty());
+            members[i] = attribute.getJavaMember();
+            types[i] = attribute.getJavaType();
+            nullables[i] = isNullable(attribute);
+        }
+        if (pageable.getCursor() != null) {
+            // (k1 > v1) or (k1 = v1 and k2 > v2) or ...
+            Object[] values = Keyset.decode(pageable.getCursor(), orders, types);
+            Predicate seek = criteriaBuilder.disjunction();
+            Predicate equals = criteriaBuilder.conjunction();
+            for (int i = 0; i < values.length; i++) {
+                Path<Comparable> path = root.get(orders.get(i).getProperty());
+                Comparable value = (Comparable) values[i];
+                boolean asc = orders.get(i).getDirection() == Order.Direction.asc;
+                Predicate next;
+                if (value == null) {
+                    // The nulls are first in ascending order and last in descending order
+                    next = asc ? criteriaBuilder.isNotNull(path) : criteriaBuilder.disjunction();
+                } else if (asc) {
+                    next = criteriaBuilder.greaterThan(path, value);
+                } else {
+                    next = nullables[i] ? criteriaBuilder.or(criteriaBuilder.lessThan(path, value), criteriaBuilder.isNull(path))
+                            : criteriaBuilder.lessThan(path, value);
+                }
+                seek = criteriaBuilder.or(seek, criteriaBuilder.and(equals, next));
+                equals = criteriaBuilder.and(equals, value == null ? criteriaBuilder.isNull(path) : criteriaBuilder.equal(path, value));
+            }
+            criteriaQuery.where(criteriaQuery.getRestriction() != null ? criteriaBuilder.and(criteriaQuery.getRestriction(), seek) : seek);
+        }
+        List<javax.persistence.criteria.Order> orderList = new ArrayList<javax.persistence.criteria.Order>();
+        for (int i = 0; i < members.length; i++) {
+            Order order = orders.get(i);
+            boolean asc = order.getDirection() == Order.Direction.asc;
+            Path<?> path = root.get(order.getProperty());
+            if (nullables[i]) {
+                // The nulls first whatever the null ordering of the database
+                Expression<Integer> nulls = criteriaBuilder.<Integer>selectCase().when(criteriaBuilder.isNull(path), 0).otherwise(1);
+                orderList.add(asc ? criteriaBuilder.asc(nulls) : criteriaBuilder.desc(nulls));
+            }
+            orderList.add(asc ? criteriaBuilder.asc(path) : criteriaBuilder.desc(path));
+        }
+        criteriaQuery.orderBy(orderList);
+        TypedQuery<T> query = getEntityManager().createQuery(criteriaQuery).setFlushMode(FlushModeType.COMMIT);
+        // One more row to know whether a next page exists
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<T> content = query.getResultList();
+        String cursor = null;
+        if (content.size() > pageable.getPageSize()) {
+            content = content.subList(0, pageable.getPageSize());
+            T last = content.get(content.size() - 1);
+            Object[] values = new Object[members.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getValue(members[i], last);
+            }
+            cursor = Keyset.encode(orders, values);
+        }
+        if (pageable.isLazyTotal()) {
+            return new Page<T>(content, total, pageable, cursor);
+        }
+        return new Page<T>(content, total.getAsLong(), pageable, cursor);
+    }
+
+    private List<Order> getKeysetOrders(Pageable pageable) {
+        List<Order> orders = new ArrayList<Order>();
+        if (isNotEmpty(pageable.getOrderProperty()) && pageable.getOrderDirection() != null) {
+            orders.add(new Order(pageable.getOrderProperty(), pageable.getOrderDirection()));
+        }
+        if (pageable.getOrders() != null) {
+            for (Order order : pageable.getOrders()) {
+                if (order.getDirection() != null) {
+                    orders.add(order);
+                }
+            }
+        }
+        if (orders.isEmpty()) {
+            if (OrderEntity.class.isAssignableFrom(entityClass)) {
+                orders.add(Order.asc(OrderEntity.ORDER_PROPERTY_NAME));
+            } else {
+                orders.add(Order.desc(OrderEntity.CREATE_DATE_PROPERTY_NAME));
+            }
+        }
+        String id = getIDName();
+        if (id == null) {
+            id = OrderEntity.ID_PROPERTY_NAME;
+        }
+        boolean unique = false;
+        for (Order order : orders) {
+            unique |= id.equals(order.getProperty());
+        }
+        if (!unique) {
+            orders.add(Order.asc(id));
+        }
+        return orders;
+    }
+
+    /**
+     * 可为null的属性
+     * ID、基本类型、非可选及nullable=false的列不为null
+     */
+    private static boolean isNullable(Attribute<?, ?> attribute) {
+        if (attribute.getJavaType().isPrimitive()) {
+            return false;
+        }
+        if (attribute instanceof SingularAttribute) {
+            SingularAttribute<?, ?> singular = (SingularAttribute<?, ?>) attribute;
+            if (singular.isId() || !singular.isOptional()) {
+                return false;
+            }
+        }
+        Member member = attribute.getJavaMember();
+        Column column = (member instanceof AnnotatedElement) ? ((AnnotatedElement) member).getAnnotation(Column.class) : null;
+        return column == null || column.nullable();
+    }
+
+    private Object getValue(Member member, T entity) {
+        try {
+            if (member instanceof Field) {
+                Field field = (Field) member;
+                field.setAccessible(true);
+                return field.get(entity);
+            }
+            Method method = (Method) member;
+            method.setAccessible(true);
+            return method.invoke(entity);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
     }
 
     protected Long count(CriteriaQuery<T> criteriaQuery, List<Filter> filters) {
+        return createCountTypedQuery(criteriaQuery, filters).setFlushMode(FlushModeType.COMMIT).getSingleResult();
+    }
+
+    /**
+     * 计数查询
+     * EclipseLink按对象解析条件中的路径，条件引用的原查询的根不在复制的查询中时成为交叉连接，所以在原查询上计数后恢复
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private TypedQuery<Long> createCountTypedQuery(CriteriaQuery<T> criteriaQuery, List<Filter> filters) {
+        final EntityManager em = getEntityManager();
+        final Root<T> root = getRoot(criteriaQuery);
+        if (root == null || !criteriaQuery.getClass().getName().startsWith("org.eclipse.persistence.")) {
+            return em.createQuery(createCountQuery(criteriaQuery, filters));
+        }
+        addRestrictions(criteriaQuery, filters);
+        final Selection<? extends T> selection = criteriaQuery.getSelection();
+        final List<javax.persistence.criteria.Order> orders = new ArrayList<>();
+        if (criteriaQuery.getOrderList() != null) {
+            orders.addAll(criteriaQuery.getOrderList());
+        }
+        try {
+            ((CriteriaQuery) criteriaQuery).select(em.getCriteriaBuilder().count(root));
+            criteriaQuery.orderBy(new ArrayList<javax.persistence.criteria.Order>());
+            // Translated when created
+            return (TypedQuery) em.createQuery(criteriaQuery);
+        } finally {
+            criteriaQuery.select(selection != null ? selection : root);
+            criteriaQuery.orderBy(orders);
+        }
+    }
+
+    private CriteriaQuery<Long> createCountQuery(CriteriaQuery<T> criteriaQuery, List<Filter> filters) {
         CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
         addRestrictions(criteriaQuery, filters);
 
         CriteriaQuery<Long> countCriteriaQuery = criteriaBuilder.createQuery(Long.class);
+        final AtomicInteger aliases = new AtomicInteger();
         for (Root<?> root : criteriaQuery.getRoots()) {
             Root<?> dest = countCriteriaQuery.from(root.getJavaType());
-            dest.alias(getAlias(root));
-            copyJoins(root, dest);
+            dest.alias(getAlias(root, aliases));
+            copyJoins(root, dest, aliases);
         }
 
         Root<?> countRoot = getRoot(countCriteriaQuery, criteriaQuery.getResultType());
@@ -483,17 +974,19 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         if (criteriaQuery.getRestriction() != null) {
             countCriteriaQuery.where(criteriaQuery.getRestriction());
         }
-        return getEntityManager().createQuery(countCriteriaQuery).setFlushMode(FlushModeType.COMMIT).getSingleResult();
+        return countCriteriaQuery;
     }
 
-    private synchronized String getAlias(Selection<?> selection) {
+    /**
+     * 别名
+     * 别名只需在一个查询内唯一，按复制的顺序编号，同一查询再次计数时生成相同的别名
+     */
+    private static String getAlias(Selection<?> selection, AtomicInteger aliases) {
         if (selection != null) {
+            final int index = aliases.getAndIncrement();
             String alias = selection.getAlias();
             if (alias == null) {
-                if (aliasCount >= MAX_ALIAS_COUNT) {
-                    aliasCount = 0;
-                }
-                alias = "generatedAlias" + aliasCount++;
+                alias = "generatedAlias" + index;
                 selection.alias(alias);
             }
             return alias;
@@ -519,11 +1012,11 @@ public abstract class BaseDao<T, ID extends Serializable> extends AbstractDao<T,
         return null;
     }
 
-    private void copyJoins(From<?, ?> from, From<?, ?> to) {
+    private void copyJoins(From<?, ?> from, From<?, ?> to, AtomicInteger aliases) {
         for (Join<?, ?> join : from.getJoins()) {
             Join<?, ?> toJoin = to.join(join.getAttribute().getName(), join.getJoinType());
-            toJoin.alias(getAlias(join));
-            copyJoins(join, toJoin);
+            toJoin.alias(getAlias(join, aliases));
+            copyJoins(join, toJoin, aliases);
         }
         for (Fetch<?, ?> fetch : from.getFetches()) {
             Fetch<?, ?> toFetch = to.fetch(fetch.getAttribute().getName());
@@ -0,0 +1,536 @@
+package net.tiny.dao;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.EntityListeners;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.PrePersist;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.metamodel.EmbeddableType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * JDBC batch insert of entities, without the persistence context.
+ * <p>
+ * The columns come from the singular attributes of the JPA metamodel: basic and embedded
+ * attributes, and the foreign keys of the owned to-one relationships. The entities are bound
+ * to one prepared statement and executed by batches. An IDENTITY or SEQUENCE key is generated
+ * by the database and set on the entity from the generated keys; TABLE and AUTO keys need
+ * the provider and are not supported. Like the provider, the keys already assigned are kept:
+ * when the first entity has a key, the keys of all entities are inserted (e.g. loaded from a
+ * file) and the sequence is not advanced. The {@link PrePersist} callbacks of the entity and
+ * its listeners are called before binding, but the entities do not become managed.
+ */
+final class BatchInserter<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchInserter.class.getName());
+
+    // Default sequence of EclipseLink when the generator is not named
+    private static final String DEFAULT_SEQUENCE = "SEQ_GEN_SEQUENCE";
+
+    private final Class<T> entityClass;
+    private final String table;
+    private final PersistenceUnitUtil util;
+    private final List<Binding> columns = new ArrayList<>();
+    private final List<Callback> callbacks = new ArrayList<>();
+    private Binding generated = null;
+    private String sequence = null;
+
+    BatchInserter(Metamodel metamodel, PersistenceUnitUtil util, Class<T> entityClass, String table) {
+        this.entityClass = entityClass;
+        this.table = table;
+        this.util = util;
+        final EntityType<T> type = metamodel.entity(entityClass);
+        if (type.getSupertype() instanceof EntityType) {
+            throw new PersistenceException(String.format("Bulk insert of the inherited entity '%s' is not supported.", type.getName()));
+        }
+        map(type, new Member[0]);
+        callbacks(entityClass);
+    }
+
+    private void map(ManagedType<?> type, Member[] path) {
+        for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+            final Member member = accessible(attribute.getJavaMember());
+            final AnnotatedElement element = (AnnotatedElement)member;
+            final Member[] members = append(path, member);
+            switch (attribute.getPersistentAttributeType()) {
+            case BASIC:
+                Column column = element.getAnnotation(Column.class);
+                if (null != column && !column.insertable()) {
+                    break;
+                }
+                Binding binding = new Binding(columnName(element, attribute.getName()), members, element, attribute.isVersion());
+                GeneratedValue value = element.getAnnotation(GeneratedValue.class);
+                if (attribute.isId() && null != value) {
+                    generated(binding, value);
+                } else {
+                    columns.add(binding);
+                }
+                break;
+            case EMBEDDED:
+                map((EmbeddableType<?>)attribute.getType(), members);
+                break;
+            case MANY_TO_ONE:
+            case ONE_TO_ONE:
+                OneToOne oneToOne = element.getAnnotation(OneToOne.class);
+                JoinColumn join = element.getAnnotation(JoinColumn.class);
+                if ((null != oneToOne && !oneToOne.mappedBy().isEmpty()) || (null != join && !join.insertable())) {
+                    break;
+                }
+                columns.add(new Binding(joinColumnName(join, attribute), members, null, false));
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private void generated(Binding binding, GeneratedValue value) {
+        final GenerationType strategy = value.strategy();
+        if (strategy == GenerationType.SEQUENCE) {
+            sequence = DEFAULT_SEQUENCE;
+            if (!value.generator().isEmpty()) {
+                SequenceGenerator generator = sequenceGenerator(binding.element, value.generator());
+                sequence = (null == generator || generator.sequenceName().isEmpty()) ? value.generator() : generator.sequenceName();
+            }
+        } else if (strategy != GenerationType.IDENTITY) {
+            throw new PersistenceException(String.format("Bulk insert of the %s generated key '%s.%s' is not supported.",
+                    strategy, entityClass.getSimpleName(), binding.column));
+        }
+        generated = binding;
+    }
+
+    private SequenceGenerator sequenceGenerator(AnnotatedElement element, String name) {
+        SequenceGenerator generator = element.getAnnotation(SequenceGenerator.class);
+        if (null != generator && name.equals(generator.name())) {
+            return generator;
+        }
+        for (Class<?> type = entityClass; null != type; type = type.getSuperclass()) {
+            generator = type.getAnnotation(SequenceGenerator.class);
+            if (null != generator && name.equals(generator.name())) {
+                return generator;
+            }
+        }
+        return null;
+    }
+
+    private void callbacks(Class<?> type) {
+        if (null == type || Object.class.equals(type)) {
+            return;
+        }
+        // The callbacks of the super classes are called first
+        callbacks(type.getSuperclass());
+        EntityListeners listeners = type.getAnnotation(EntityListeners.class);
+        if (null != listeners) {
+            for (Class<?> listener : listeners.value()) {
+                try {
+                    Object instance = listener.getDeclaredConstructor().newInstance();
+                    for (Method method : listener.getDeclaredMethods()) {
+                        if (method.isAnnotationPresent(PrePersist.class) && method.getParameterCount() == 1) {
+                            callbacks.add(new Callback(instance, accessible(method)));
+                        }
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new PersistenceException("Can not create the entity listener " + listener.getName(), e);
+                }
+            }
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(PrePersist.class) && method.getParameterCount() == 0) {
+                callbacks.add(new Callback(null, accessible(method)));
+            }
+        }
+    }
+
+    String generateInsertSql(Connection connection, List<Binding> bindings) throws SQLException {
+        final StringBuilder names = new StringBuilder();
+        final StringBuilder values = new StringBuilder();
+        if (null != generated && null != sequence && !bindings.contains(generated)) {
+            names.append(generated.column).append(',');
+            values.append(nextValue(connection, sequence)).append(',');
+        }
+        for (Binding binding : bindings) {
+            names.append(binding.column).append(',');
+            values.append("?,");
+        }
+        names.setLength(names.length() - 1);
+        values.setLength(values.length() - 1);
+        return String.format("INSERT INTO %s (%s) VALUES (%s)", table, names, values);
+    }
+
+    private static String nextValue(Connection connection, String sequence) throws SQLException {
+        final String product = connection.getMetaData().getDatabaseProductName();
+        if (product.startsWith("PostgreSQL")) {
+            return String.format("nextval('%s')", sequence);
+        } else if (product.startsWith("Oracle")) {
+            return sequence + ".NEXTVAL";
+        }
+        // H2, HSQLDB, Derby, DB2, SQL Server, MariaDB
+        return "NEXT VALUE FOR " + sequence;
+    }
+
+    /**
+     * Insert the entities by JDBC batches on the connection, the caller commits.
+     *
+     * @param connection JDBC Connection
+     * @param entities The entities
+     * @param batchSize Rows of a batch
+     * @param inserted Called with every entity after its batch was executed
+     * @return The number of inserted rows
+     */
+    int insert(Connection connection, Iterator<T> entities, int batchSize, Consumer<T> inserted) {
+        final PeekingIterator<T> it = new PeekingIterator<>(entities);
+        final boolean assigned;
+        try {
+            assigned = null != generated && it.hasNext() && assigned(generated.value(it.peek(), util));
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(String.format("Error(%s) occured while binding an entity '%s'", e.getMessage(), entityClass.getName()), e);
+        }
+        final List<Binding> bindings = new ArrayList<>();
+        if (assigned) {
+            bindings.add(generated);
+        }
+        bindings.addAll(columns);
+        final String sql;
+        final int[] types;
+        try {
+            sql = generateInsertSql(connection, bindings);
+            String[] names = new String[bindings.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = bindings.get(i).column;
+            }
+            types = CsvImporter.columnTypes(connection, table, names);
+        } catch (SQLException e) {
+            throw new PersistenceException(String.format("Error(%s) occured while preparing a bulk insert into '%s'", e.getMessage(), table), e);
+        }
+        final long st = System.currentTimeMillis();
+        final List<T> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        try (PreparedStatement stmt = (null != generated && !assigned)
+                ? connection.prepareStatement(sql, new String[] {generated.column})
+                : connection.prepareStatement(sql)) {
+            while (it.hasNext()) {
+                T entity = it.next();
+                for (Callback callback : callbacks) {
+                    callback.call(entity);
+                }
+                for (int i = 0; i < bindings.size(); i++) {
+                    Object value = bindings.get(i).value(entity, util);
+                    if (null == value) {
+                        stmt.setNull(i + 1, types[i]);
+                    } else {
+                        stmt.setObject(i + 1, value);
+                    }
+                }
+                stmt.addBatch();
+                batch.add(entity);
+                if (batch.size() == batchSize) {
+                    count += execute(stmt, batch, assigned, inserted);
+                }
+            }
+            if (!batch.isEmpty()) {
+                count += execute(stmt, batch, assigned, inserted);
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException(String.format("Error(%s) occured while executing a bulk insert : %s", e.getMessage(), sql), e);
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(String.format("Error(%s) occured while binding an entity '%s'", e.getMessage(), entityClass.getName()), e);
+        }
+        long time = Math.max(1L, System.currentTimeMillis() - st);
+        LOGGER.fine(String.format("[JPA] bulk insert %d rows into '%s' by batch of %d - %dms (%d rows/s)",
+                count, table, batchSize, time, count * 1000L / time));
+        return count;
+    }
+
+    private int execute(PreparedStatement stmt, List<T> batch, boolean assigned, Consumer<T> inserted) throws SQLException, ReflectiveOperationException {
+        stmt.executeBatch();
+        if (null != generated && !assigned) {
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (T entity : batch) {
+                    if (!keys.next()) {
+                        throw new SQLException(String.format("Missing generated key of '%s' on '%s'", generated.column, table));
+                    }
+                    generated.set(entity, key(keys.getObject(1), generated.type));
+                }
+            }
+        }
+        for (T entity : batch) {
+            inserted.accept(entity);
+        }
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    /**
+     * A key of zero is not assigned, as the default value of a primitive key.
+     */
+    private static boolean assigned(Object key) {
+        if (null == key) {
+            return false;
+        }
+        return !(key instanceof Number) || ((Number)key).longValue() != 0L;
+    }
+
+    private static Object key(Object key, Class<?> type) {
+        if (!(key instanceof Number)) {
+            return key;
+        }
+        final Number number = (Number)key;
+        if (Long.class.equals(type) || long.class.equals(type)) {
+            return number.longValue();
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            return number.intValue();
+        } else if (Short.class.equals(type) || short.class.equals(type)) {
+            return number.shortValue();
+        }
+        return key;
+    }
+
+    private static String columnName(AnnotatedElement element, String name) {
+        Column column = element.getAnnotation(Column.class);
+        return (null == column || column.name().isEmpty()) ? name : column.name();
+    }
+
+    private static String joinColumnName(JoinColumn join, SingularAttribute<?, ?> attribute) {
+        if (null != join && !join.name().isEmpty()) {
+            return join.name();
+        }
+        final EntityType<?> target = (EntityType<?>)attribute.getType();
+        final SingularAttribute<?, ?> id = target.getId(target.getIdType().getJavaType());
+        return attribute.getName() + "_" + columnName((AnnotatedElement)id.getJavaMember(), id.getName());
+    }
+
+    private static <M extends Member> M accessible(M member) {
+        if (!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+            ((AccessibleObject)member).setAccessible(true);
+        }
+        return member;
+    }
+
+    private static Member[] append(Member[] path, Member member) {
+        Member[] members = new Member[path.length + 1];
+        System.arraycopy(path, 0, members, 0, path.length);
+        members[path.length] = member;
+        return members;
+    }
+
+    private static Object get(Member member, Object target) throws ReflectiveOperationException {
+        if (member instanceof Field) {
+            return ((Field)member).get(target);
+        }
+        return ((Method)member).invoke(target);
+    }
+
+    /**
+     * A column and the access path of its attribute.
+     */
+    static final class Binding {
+        final String column;
+        final Member[] path;
+        final AnnotatedElement element;
+        final Class<?> type;
+        final boolean version;
+        final AttributeConverter<Object, Object> converter;
+
+        @SuppressWarnings("unchecked")
+        Binding(String column, Member[] path, AnnotatedElement element, boolean version) {
+            this.column = column;
+            this.path = path;
+            this.element = element;
+            this.version = version;
+            final Member member = path[path.length - 1];
+            this.type = (member instanceof Field) ? ((Field)member).getType() : ((Method)member).getReturnType();
+            Convert convert = (null != element) ? element.getAnnotation(Convert.class) : null;
+            if (null != convert && !convert.disableConversion() && !void.class.equals(convert.converter())) {
+                try {
+                    this.converter = (AttributeConverter<Object, Object>)convert.converter().getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new PersistenceException("Can not create the converter " + convert.converter().getName(), e);
+                }
+            } else {
+                this.converter = null;
+            }
+        }
+
+        Object value(Object entity, PersistenceUnitUtil util) throws ReflectiveOperationException {
+            Object value = entity;
+            for (Member member : path) {
+                if (null == value) {
+                    return null;
+                }
+                value = get(member, value);
+            }
+            if (null == element) {
+                // Foreign key of a to-one relationship
+                return (null == value) ? null : util.getIdentifier(value);
+            }
+            if (null == value && version) {
+                return initialVersion();
+            }
+            if (null != converter) {
+                value = converter.convertToDatabaseColumn(value);
+            }
+            return jdbcValue(value);
+        }
+
+        private Object initialVersion() {
+            if (Long.class.equals(type) || long.class.equals(type)) {
+                return 1L;
+            } else if (Integer.class.equals(type) || int.class.equals(type)) {
+                return 1;
+            } else if (Short.class.equals(type) || short.class.equals(type)) {
+                return (short)1;
+            }
+            return new Timestamp(System.currentTimeMillis());
+        }
+
+        private Object jdbcValue(Object value) {
+            if (null == value) {
+                return null;
+            }
+            if (value instanceof Enum) {
+                Enumerated enumerated = element.getAnnotation(Enumerated.class);
+                return (null != enumerated && enumerated.value() == EnumType.STRING)
+                        ? ((Enum<?>)value).name() : ((Enum<?>)value).ordinal();
+            } else if (value instanceof LocalDateTime) {
+                return Timestamp.valueOf((LocalDateTime)value);
+            } else if (value instanceof LocalDate) {
+                return java.sql.Date.valueOf((LocalDate)value);
+            } else if (value instanceof LocalTime) {
+                return java.sql.Time.valueOf((LocalTime)value);
+            } else if (value instanceof Character) {
+                return value.toString();
+            } else if (value instanceof Calendar) {
+                return temporal(((Calendar)value).getTime());
+            } else if (value instanceof Date && !(value instanceof java.sql.Date
+                    || value instanceof java.sql.Time || value instanceof Timestamp)) {
+                return temporal((Date)value);
+            }
+            return value;
+        }
+
+        private Object temporal(Date date) {
+            Temporal temporal = element.getAnnotation(Temporal.class);
+            if (null != temporal && temporal.value() == TemporalType.DATE) {
+                return new java.sql.Date(date.getTime());
+            } else if (null != temporal && temporal.value() == TemporalType.TIME) {
+                return new java.sql.Time(date.getTime());
+            }
+            return new Timestamp(date.getTime());
+        }
+
+        void set(Object entity, Object value) throws ReflectiveOperationException {
+            Object target = entity;
+            for (int i = 0; i < path.length - 1; i++) {
+                target = get(path[i], target);
+            }
+            final Member member = path[path.length - 1];
+            if (member instanceof Field) {
+                ((Field)member).set(target, value);
+            } else {
+                String name = "s" + member.getName().substring(1);
+                Method setter = member.getDeclaringClass().getDeclaredMethod(name, type);
+                accessible(setter).invoke(target, value);
+            }
+        }
+    }
+
+    /**
+     * An iterator reading its next element ahead.
+     */
+    static final class PeekingIterator<E> implements Iterator<E> {
+        final Iterator<E> iterator;
+        E next = null;
+        boolean peeked = false;
+
+        PeekingIterator(Iterator<E> iterator) {
+            this.iterator = iterator;
+        }
+
+        E peek() {
+            if (!peeked) {
+                next = iterator.next();
+                peeked = true;
+            }
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peeked || iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            final E e = peek();
+            peeked = false;
+            next = null;
+            return e;
+        }
+    }
+
+    /**
+     * A {@link PrePersist} method of the entity or of a listener.
+     */
+    static final class Callback {
+        final Object listener;
+        final Method method;
+
+        Callback(Object listener, Method method) {
+            this.listener = listener;
+            this.method = method;
+        }
+
+        void call(Object entity) throws ReflectiveOperationException {
+            try {
+                if (null == listener) {
+                    method.invoke(entity);
+                } else {
+                    method.invoke(listener, entity);
+                }
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package net.tiny.dao;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk insert: the keys of the inserted entities in the insert order,
+ * the number of rows and the elapsed time.
+ */
+public class BulkResult<ID extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String table;
+    private final List<ID> keys;
+    private final long time;
+
+    public BulkResult(String table, List<ID> keys, long time) {
+        this.table = table;
+        this.keys = Collections.unmodifiableList(keys);
+        this.time = time;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return The assigned or generated keys, in the order of the entities
+     */
+    public List<ID> getKeys() {
+        return keys;
+    }
+
+    public int getCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return The elapsed time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getRowsPerSecond() {
+        return keys.size() * 1000L / Math.max(1L, time);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("inserted %d rows into '%s' - %dms (%d rows/s)",
+                getCount(), table, time, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,259 @@
+package net.tiny.dao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Plain or gzip compressed CSV files, by the '.gz' file name suffix.
+ * <p>
+ * The gzip streams run on their own thread and hand blocks of bytes through a small bounded
+ * queue, so decompression overlaps with parsing and compression overlaps with formatting.
+ */
+final class Compression {
+
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int QUEUE_SIZE = 4;
+    // End of stream marker
+    private static final byte[] EOF = new byte[0];
+
+    private Compression() {}
+
+    static boolean gzip(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(GZIP_SUFFIX);
+    }
+
+    static BufferedReader reader(Path path) throws IOException {
+        if (!gzip(path)) {
+            return Files.newBufferedReader(path);
+        }
+        return new BufferedReader(new InputStreamReader(new InflaterStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    static Writer writer(Path path, boolean gzip) throws IOException {
+        final OutputStream out = gzip ? new DeflaterStream(path) : Files.newOutputStream(path);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static Thread start(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Decompress the file on a thread, read the blocks from the queue.
+     */
+    static class InflaterStream extends InputStream {
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread thread;
+        private volatile IOException error = null;
+        private volatile boolean closed = false;
+        private byte[] block = null;
+        private int position = 0;
+
+        InflaterStream(Path path) throws IOException {
+            final InputStream in = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+            this.thread = start(() -> inflate(in), "csv-gunzip-" + path.getFileName());
+        }
+
+        private void inflate(InputStream in) {
+            try (InputStream gzip = in) {
+                while (!closed) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int size = 0;
+                    int n;
+                    while (size < buffer.length && (n = gzip.read(buffer, size, buffer.length - size)) > 0) {
+                        size += n;
+                    }
+                    if (size == 0) {
+                        break;
+                    }
+                    put((size == buffer.length) ? buffer : Arrays.copyOf(buffer, size));
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException(e.getMessage());
+            } finally {
+                try {
+                    put(EOF);
+                } catch (InterruptedException ignore) {
+                    // Closed by the reader
+                }
+            }
+        }
+
+        private void put(byte[] data) throws InterruptedException {
+            while (!closed && !queue.offer(data, 100L, TimeUnit.MILLISECONDS)) {
+                // Wait for the reader
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (null != block && position < block.length) {
+                return true;
+            }
+            if (block == EOF) {
+                return false;
+            }
+            try {
+                block = queue.take();
+                position = 0;
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+            if (block == EOF) {
+                if (null != error) {
+                    throw error;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? (block[position++] & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            queue.clear();
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Queue the blocks, compress them to the file on a thread.
+     */
+    static class DeflaterStream extends OutputStream {
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread thread;
+        private volatile IOException error = null;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int size = 0;
+        private boolean closed = false;
+
+        DeflaterStream(Path path) throws IOException {
+            final OutputStream out = new GZIPOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+            this.thread = start(() -> deflate(out), "csv-gzip-" + path.getFileName());
+        }
+
+        private void deflate(OutputStream out) {
+            try (OutputStream gzip = out) {
+                byte[] data;
+                while ((data = queue.take()) != EOF) {
+                    if (null == error) {
+                        gzip.write(data);
+                    }
+                }
+            } catch (IOException e) {
+                if (null == error) {
+                    error = e;
+                }
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException(e.getMessage());
+            }
+        }
+
+        private void check() throws IOException {
+            if (null != error) {
+                throw error;
+            }
+        }
+
+        private void put(byte[] data) throws IOException {
+            try {
+                while (!queue.offer(data, 100L, TimeUnit.MILLISECONDS)) {
+                    if (!thread.isAlive()) {
+                        check();
+                        throw new IOException("Compression thread stopped.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (size > 0) {
+                put((size == buffer.length) ? buffer : Arrays.copyOf(buffer, size));
+                buffer = new byte[BUFFER_SIZE];
+                size = 0;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                flushBuffer();
+            }
+            buffer[size++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check();
+            while (len > 0) {
+                if (size == buffer.length) {
+                    flushBuffer();
+                }
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flushBuffer();
+                put(EOF);
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+            check();
+        }
+    }
+}
@@ -6,6 +6,8 @@ package net.tiny.dao;
  */
 public interface Constants {
     int DEFAULT_BATCH_SIZE = 1000;
+    int DEFAULT_FETCH_SIZE = 100;
+    int DEFAULT_CHUNK_SIZE = 500;
     String DEFAULT_UNIT   = "persistenceUnit";
     String JPA_UNIT       = DEFAULT_UNIT;
     String DEFAULT_PROFILE= "";
@@ -0,0 +1,121 @@
+package net.tiny.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Total counts of the pages by entity type and filter shape.
+ * <p>
+ * A count is reused until its time to live ends, or until the entity type is written
+ * through a DAO. The counts are dropped when the write is issued and again when the DAO
+ * commits it, and a DAO with writes pending in its transaction neither reads nor keeps
+ * counts, so a rolled back write leaves no count behind. A count read while the type is
+ * written is not kept.
+ * <p>
+ * A transaction committed without the DAO, by its entity manager or by a container, is only
+ * seen at the next read of the DAO, until then the other entity managers may read the counts
+ * of before the commit. Writes that bypass the DAOs (JDBC, CSV imports) are only seen after
+ * the time to live.
+ */
+final class CountCache {
+
+    // Counts of an entity type, cleared when full
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final Map<Class<?>, Map<String, Entry>> COUNTS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+    private CountCache() {}
+
+    static Long get(Class<?> type, String key) {
+        final Map<String, Entry> counts = COUNTS.get(type);
+        if (null == counts) {
+            return null;
+        }
+        final Entry entry = counts.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if (entry.expires < System.currentTimeMillis()) {
+            counts.remove(key, entry);
+            return null;
+        }
+        return entry.total;
+    }
+
+    static void put(Class<?> type, String key, long generation, long total, long ttl) {
+        final Map<String, Entry> counts = COUNTS.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        if (counts.size() >= MAX_ENTRIES) {
+            counts.clear();
+        }
+        final Entry entry = new Entry(total, System.currentTimeMillis() + ttl);
+        counts.put(key, entry);
+        if (generation != generation(type)) {
+            // Written while it was counted
+            counts.remove(key, entry);
+        }
+    }
+
+    /**
+     * The generation of the counts of a type, read before the count query.
+     */
+    static long generation(Class<?> type) {
+        return GENERATIONS.computeIfAbsent(type, t -> new AtomicLong()).get();
+    }
+
+    static void invalidate(Class<?> type) {
+        final AtomicLong generation = GENERATIONS.get(type);
+        if (null != generation) {
+            generation.incrementAndGet();
+        }
+        final Map<String, Entry> counts = COUNTS.get(type);
+        if (null != counts) {
+            counts.clear();
+        }
+    }
+
+    /**
+     * The search and the filters of the page, in a stable order.
+     */
+    static String key(Pageable pageable) {
+        return key(pageable.getSearchProperty(), pageable.getSearchValue(), pageable.getFilters());
+    }
+
+    static String key(String searchProperty, String searchValue, List<Filter> filters) {
+        final List<String> shapes = new ArrayList<>();
+        if (null != filters) {
+            for (Filter filter : filters) {
+                if (null == filter || null == filter.getProperty()) {
+                    continue;
+                }
+                shapes.add(String.format("%s %s %s %s", filter.getProperty(), filter.getOperator(),
+                        value(filter.getValue()), filter.getIgnoreCase()));
+            }
+        }
+        Collections.sort(shapes);
+        return String.format("search %s %s where %s", searchProperty, searchValue, shapes);
+    }
+
+    private static String value(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.deepToString((Object[])value);
+        }
+        return (null == value) ? "null" : value.getClass().getSimpleName() + ":" + value;
+    }
+
+    static final class Entry {
+        final long total;
+        final long expires;
+
+        Entry(long total, long expires) {
+            this.total = total;
+            this.expires = expires;
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package net.tiny.dao;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
+
 import net.tiny.dao.reference.Column;
 import net.tiny.dao.reference.SchemaParser;
 
@@ -20,6 +30,8 @@ public class CsvExporter {
     private static Logger LOGGER = Logger.getLogger(CsvExporter.class.getName());
 
     private static String TABLE_ORDERING_FILE = "table-ordering.txt";
+    private static final String LINE_BREAK = "\r\n";
+    private static final long PROGRESS_ROWS = 100000L;
     static final String SAVE_DATA_H2_FORMAT = "CALL CSVWRITE('%s', 'SELECT %s FROM %s', 'charset=UTF-8');";
     static final String SAVE_DATA_FORMAT = "SELECT * UNION ALL SELECT %s FROM %s INTO OUTFILE '%s' fields"
                                          + " TERMINATED BY '%s'"
@@ -53,13 +65,12 @@ public class CsvExporter {
      */
     public static void save(IDao<?,?> dao, Options options) throws SQLException {
         final Connection connection = dao.getJdbcConnection();
-        final SchemaParser parser = new SchemaParser(connection);
-        final List<Column> list = parser.getColumns(options.schema, options.table);
-        final String[] columns = new String[list.size()];
-        for (int i=0; i<list.size(); i++) {
-            columns[i] = list.get(i).getColumnName();
+        final String[] columns = columns(connection, options);
+        if (streamable(connection, options)) {
+            // The connection is committed by the transaction of the DAO
+            saveStream(connection, options, columns, new Partition(options.path), true);
+            return;
         }
-
         String sql;
         if (connection.toString().contains("h2")) {
             sql = generateSelectSql(options, columns, true);
@@ -73,6 +84,322 @@ public class CsvExporter {
         dao.commitAndContinue();
     }
 
+    private static String[] columns(Connection connection, Options options) throws SQLException {
+        final SchemaParser parser = new SchemaParser(connection);
+        final List<Column> list = parser.getColumns(options.schema, options.table);
+        final String[] columns = new String[list.size()];
+        for (int i=0; i<list.size(); i++) {
+            columns[i] = list.get(i).getColumnName();
+        }
+        return columns;
+    }
+
+    /**
+     * The streaming export is used when it is enabled, when the file is gzip compressed
+     * or when the database supports neither H2 'CSVWRITE' nor MySQL 'INTO OUTFILE'.
+     */
+    private static boolean streamable(Connection connection, Options options) throws SQLException {
+        if (options.stream || Compression.gzip(options.path)) {
+            return true;
+        }
+        if (connection.toString().contains("h2")) {
+            return false;
+        }
+        return !mysql(connection);
+    }
+
+    private static boolean mysql(Connection connection) throws SQLException {
+        final String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        return product.contains("mysql") || product.contains("mariadb");
+    }
+
+    /**
+     * Export CSV file on the client side, reading the table with a forward-only cursor.
+     * NULL values are written as empty fields.
+     *
+     * @param connection Database connection
+     * @param options Output option of CSV or TSV file
+     * @param columns The table columns
+     * @return The number of exported rows
+     * @throws SQLException
+     */
+    static long saveStream(Connection connection, Options options, String[] columns) throws SQLException {
+        return saveStream(connection, options, columns, new Partition(options.path), false);
+    }
+
+    /**
+     * @param managed The connection of a JPA transaction, neither committed nor rolled back here
+     */
+    private static long saveStream(Connection connection, Options options, String[] columns, Partition partition, boolean managed) throws SQLException {
+        final long st = System.currentTimeMillis();
+        final String sql = String.format("SELECT %s FROM %s", String.join(",", columns), options.table) + partition.where(options.key);
+        final char delimiter = SeparatedValues.delimiter(options.type);
+        final boolean autoCommit = connection.getAutoCommit();
+        long count = 0L;
+        if (!managed) {
+            // Cursor based fetching needs a transaction on some drivers (e.g. PostgreSQL)
+            connection.setAutoCommit(false);
+        }
+        try (Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             Writer writer = Compression.writer(partition.path, Compression.gzip(options.path))) {
+            // MySQL streams the rows only with this fetch size
+            stmt.setFetchSize(mysql(connection) ? Integer.MIN_VALUE : options.fetchSize);
+            if (options.verbose) {
+                LOGGER.info(String.format("[CSV] export sql '%s'", sql));
+            }
+            if (partition.header) {
+                for (int i=0; i<columns.length; i++) {
+                    if (i > 0) {
+                        writer.write(delimiter);
+                    }
+                    writer.write(columns[i]);
+                }
+                writer.write(LINE_BREAK);
+            }
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                final ResultSetMetaData meta = rs.getMetaData();
+                final boolean[] binary = new boolean[columns.length];
+                for (int i=0; i<columns.length; i++) {
+                    binary[i] = binary(meta.getColumnType(i + 1));
+                }
+                while (rs.next()) {
+                    for (int i=0; i<columns.length; i++) {
+                        if (i > 0) {
+                            writer.write(delimiter);
+                        }
+                        if (binary[i]) {
+                            byte[] bytes = rs.getBytes(i + 1);
+                            if (null != bytes) {
+                                writer.write(Base64.getEncoder().encodeToString(bytes));
+                            }
+                        } else {
+                            write(writer, rs.getString(i + 1));
+                        }
+                    }
+                    writer.write(LINE_BREAK);
+                    if (++count % PROGRESS_ROWS == 0 && options.verbose) {
+                        LOGGER.info(String.format("[CSV] export %s%d rows from '%s' - %dms",
+                                partition, count, options.table, System.currentTimeMillis() - st));
+                    }
+                }
+            }
+            if (!managed) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            if (!managed) {
+                connection.rollback();
+            }
+            throw e;
+        } catch (IOException e) {
+            if (!managed) {
+                connection.rollback();
+            }
+            throw new SQLException(String.format("Error '%s' occured while output data to file. Cause: %s", sql, e.getMessage()), e);
+        } finally {
+            if (!managed) {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        if (options.verbose) {
+            long time = Math.max(1L, System.currentTimeMillis() - st);
+            LOGGER.info(String.format("[CSV] export %s%d rows from '%s' - %dms (%d rows/s)",
+                    partition, count, options.table, time, count * 1000L / time));
+        }
+        return count;
+    }
+
+    /**
+     * Export CSV file from given database table, split in ranges of the numeric key column.
+     * Every range is exported on its own connection and thread, then the range files are
+     * appended in key order to the output file, or kept as one file per range.
+     *
+     * @param dataSource The data source of the range connections
+     * @param options Output option of CSV or TSV file
+     * @return The number of exported rows
+     * @throws SQLException
+     */
+    public static long save(DataSource dataSource, Options options) throws SQLException {
+        final String[] columns;
+        final List<Partition> partitions;
+        try (Connection connection = dataSource.getConnection()) {
+            columns = columns(connection, options);
+            partitions = partitions(connection, options);
+        }
+        final long[] counts = new long[partitions.size()];
+        try {
+            TableOrdering.execute(Collections.singletonList(partitions), partitions.size(), partition -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    counts[partition.index] = saveStream(connection, options, columns, partition, false);
+                }
+            });
+            if (options.merged && partitions.size() > 1) {
+                merge(options.path, partitions);
+            }
+        } catch (IOException e) {
+            throw new SQLException(String.format("Error occured while merging file '%s'. Cause: %s", options.path, e.getMessage()), e);
+        } finally {
+            if (options.merged && partitions.size() > 1) {
+                for (Partition partition : partitions) {
+                    try {
+                        Files.deleteIfExists(partition.path);
+                    } catch (IOException e) {
+                        LOGGER.warning(String.format("[CSV] can not delete '%s' : %s", partition.path, e.getMessage()));
+                    }
+                }
+            }
+        }
+        long count = 0L;
+        for (long c : counts) {
+            count += c;
+        }
+        return count;
+    }
+
+    static List<Partition> partitions(Connection connection, Options options) throws SQLException {
+        final List<Partition> partitions = new ArrayList<>();
+        final Object min = (options.partitions > 1) ? DaoHelper.min(connection, options.table, options.key, Object.class) : null;
+        final Object max = (min instanceof Number) ? DaoHelper.max(connection, options.table, options.key, Object.class) : null;
+        if (!(max instanceof Number)) {
+            // Empty table or no numeric key
+            partitions.add(new Partition(options.path));
+            return partitions;
+        }
+        final long low = ((Number)min).longValue();
+        final long high = ((Number)max).longValue();
+        final int size = (int)Math.min(options.partitions, high - low + 1L);
+        final long step = (high - low) / size + 1L;
+        // 'name-0.csv.gz' for 'name.csv.gz', the merged gzip members make one gzip file
+        final String file = options.path.getFileName().toString();
+        final String suffix = Compression.gzip(options.path) ? file.substring(file.length() - Compression.GZIP_SUFFIX.length()) : "";
+        final String name = file.substring(0, file.length() - suffix.length());
+        final int dot = name.lastIndexOf('.');
+        for (int i = 0; i < size; i++) {
+            long from = low + step * i;
+            if (from > high) {
+                break;
+            }
+            long to = (i == size - 1) ? high : Math.min(high, from + step - 1L);
+            Path path;
+            if (options.merged) {
+                path = options.path.resolveSibling(String.format("%s.part%d", file, i));
+            } else if (dot > 0) {
+                path = options.path.resolveSibling(String.format("%s-%d%s%s", name.substring(0, dot), i, name.substring(dot), suffix));
+            } else {
+                path = options.path.resolveSibling(String.format("%s-%d%s", name, i, suffix));
+            }
+            // The merged file has only one header
+            partitions.add(new Partition(i, size, from, to, path, !options.merged || i == 0));
+        }
+        return partitions;
+    }
+
+    private static void merge(Path path, List<Partition> partitions) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Partition partition : partitions) {
+                try (FileChannel in = FileChannel.open(partition.path, StandardOpenOption.READ)) {
+                    final long size = in.size();
+                    long position = 0L;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of the key column, exported in key order to its own file.
+     */
+    static class Partition {
+        final int index;
+        final int size;
+        final Long from;
+        final Long to;
+        final Path path;
+        final boolean header;
+
+        Partition(Path path) {
+            this(0, 1, null, null, path, true);
+        }
+
+        Partition(int index, int size, Long from, Long to, Path path, boolean header) {
+            this.index = index;
+            this.size = size;
+            this.from = from;
+            this.to = to;
+            this.path = path;
+            this.header = header;
+        }
+
+        String where(String key) {
+            if (null == from) {
+                return "";
+            }
+            return String.format(" WHERE %1$s >= %2$d AND %1$s <= %3$d ORDER BY %1$s", key, from, to);
+        }
+
+        @Override
+        public String toString() {
+            if (null == from) {
+                return "";
+            }
+            return String.format("partition %d/%d [%d, %d] ", index + 1, size, from, to);
+        }
+    }
+
+    private static boolean binary(int type) {
+        switch (type) {
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+        case Types.BLOB:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Write the value escaped like {@link SeparatedValues#escape(String)}, without a new string.
+     */
+    static void write(Writer writer, String value) throws IOException {
+        if (null == value) {
+            return;
+        }
+        final int length = value.length();
+        boolean quoted = (length == 0);
+        for (int i=0; i<length && !quoted; i++) {
+            switch (value.charAt(i)) {
+            case ',':
+            case '"':
+            case '\t':
+            case '\r':
+            case '\n':
+                quoted = true;
+                break;
+            default:
+                break;
+            }
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write(SeparatedValues.VALUE_BOUNDARY);
+        int start = 0;
+        for (int i=0; i<length; i++) {
+            if (value.charAt(i) == SeparatedValues.VALUE_BOUNDARY) {
+                // Double the quote
+                writer.write(value, start, i - start + 1);
+                writer.write(SeparatedValues.VALUE_BOUNDARY);
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, length - start);
+        writer.write(SeparatedValues.VALUE_BOUNDARY);
+    }
+
     private static String generateSelectSql(Options options, String[] columns, boolean h2) {
         String fields = String.join(",", columns);
         if (h2) {
@@ -126,13 +453,11 @@ public class CsvExporter {
         if (null == connection || connection.isClosed()) {
             throw new SQLException("Not a valid connection.");
         }
-        final SchemaParser parser = new SchemaParser(connection);
-        final List<Column> list = parser.getColumns(options.schema, options.table);
-        final String[] columns = new String[list.size()];
-        for (int i=0; i<list.size(); i++) {
-            columns[i] = list.get(i).getColumnName();
+        final String[] columns = columns(connection, options);
+        if (streamable(connection, options)) {
+            saveStream(connection, options, columns);
+            return;
         }
-
         String sql;
         if (connection.toString().contains("h2")) {
             sql = generateSelectSql(options, columns, true);
@@ -143,7 +468,8 @@ public class CsvExporter {
     }
 
     /**
-     * Export CSV data form the table name defined by the file 'table-ordering.txt'
+     * Export CSV data form the table name defined by the file 'table-ordering.txt'.
+     * Without the file, export all tables of the current schema of the connection.
      *
      * @param connection JDBC Connection
      * @param path The path of table ordering file.
@@ -151,7 +477,7 @@ public class CsvExporter {
      */
     public static void save(Connection connection, String path) throws SQLException {
         try {
-            List<Options> options = options(path);
+            List<Options> options = options(connection, path);
             for (Options op : options) {
                 save(connection, op);
             }
@@ -160,6 +486,56 @@ public class CsvExporter {
         }
     }
 
+    /**
+     * Export CSV data of all tables in parallel on separate connections.
+     *
+     * @param dataSource The data source of the table connections
+     * @param path The path of CSV files and optional table ordering file.
+     * @throws SQLException
+     */
+    public static void save(DataSource dataSource, String path) throws SQLException {
+        save(dataSource, path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Export CSV data of all tables in parallel on separate connections.
+     *
+     * @param dataSource The data source of the table connections
+     * @param path The path of CSV files and optional table ordering file.
+     * @param threads The maximum number of tables exported in parallel
+     * @throws SQLException
+     */
+    public static void save(DataSource dataSource, String path, int threads) throws SQLException {
+        final List<Options> options;
+        try (Connection connection = dataSource.getConnection()) {
+            options = options(connection, path);
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+        // Exports only read, all tables are independent
+        TableOrdering.execute(Collections.singletonList(options), threads, op -> {
+            try (Connection connection = dataSource.getConnection()) {
+                save(connection, op);
+            }
+        });
+    }
+
+    static List<Options> options(Connection connection, String path) throws SQLException, IOException {
+        if (TableOrdering.exists(path)) {
+            return options(path);
+        }
+        List<Options> options = new ArrayList<>();
+        final String schema = TableOrdering.schema(connection);
+        for (String tab : new SchemaParser(connection).getTables(schema)) {
+            Options op = new Options(String.format("%s/%s.csv", path, tab), tab);
+            if (null != schema) {
+                op.schema(schema);
+            }
+            options.add(op);
+        }
+        return options;
+    }
+
     static List<Options> options(String path) throws IOException {
         List<Options> options = new ArrayList<>();
         Path table = Paths.get(path, TABLE_ORDERING_FILE);
@@ -182,6 +558,11 @@ public class CsvExporter {
         String delimiter = ",";
         String quotation = "\"";
         boolean verbose = false;
+        boolean stream = false;
+        int fetchSize = Constants.DEFAULT_BATCH_SIZE;
+        int partitions = 1;
+        String key = "id";
+        boolean merged = true;
 
         public Options() {}
         public Options(String p, String t) {
@@ -208,6 +589,56 @@ public class CsvExporter {
             return this;
         }
 
+        /**
+         * Write the file on the client side instead of 'CSVWRITE' or 'INTO OUTFILE'.
+         *
+         * @param enable Use streaming export on any database
+         */
+        public Options stream(boolean enable) {
+            stream = enable;
+            return this;
+        }
+
+        /**
+         * Split the table in ranges of the key column, used by {@link CsvExporter#save(DataSource, Options)}.
+         *
+         * @param number The number of ranges exported in parallel
+         */
+        public Options partitions(int number) {
+            if (number < 1) {
+                throw new IllegalArgumentException(String.format("Illegal partitions %d", number));
+            }
+            partitions = number;
+            return this;
+        }
+
+        /**
+         * @param column The numeric key column of the ranges, 'id' by default
+         */
+        public Options key(String column) {
+            key = column;
+            return this;
+        }
+
+        /**
+         * @param enable Append the ranges in key order to one file, or keep one file per range
+         */
+        public Options merged(boolean enable) {
+            merged = enable;
+            return this;
+        }
+
+        /**
+         * @param size The number of rows fetched in a round trip of the streaming export
+         */
+        public Options fetchSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException(String.format("Illegal fetch size %d", size));
+            }
+            fetchSize = size;
+            return this;
+        }
+
         public Options type(String name) {
             if (null != name) {
                 if ("csv".equalsIgnoreCase(name)) {
@@ -261,6 +692,14 @@ public class CsvExporter {
             options.verbose(enable);
             return this;
         }
+        public Builder stream(boolean enable) {
+            options.stream(enable);
+            return this;
+        }
+        public Builder fetchSize(int size) {
+            options.fetchSize(size);
+            return this;
+        }
         public CsvExporter build() {
             if (options.path == null || options.table == null) {
                 throw new IllegalArgumentException("Path or Table name not set.");
@@ -4,13 +4,24 @@ import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.LineNumberReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -18,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
 import javax.validation.ConstraintViolation;
 
 import net.tiny.dao.reference.Column;
@@ -44,10 +56,12 @@ public class CsvImporter {
     /**
      * Parse CSV file and load in given database table.
      *
+     * @return The number of loaded rows
      * @throws SQLException
      */
     public long load() throws SQLException {
-        long s = builder.dao.count();
+        // A truncated table is loaded from empty
+        long s = builder.options.truncated ? 0L : builder.dao.count();
         load(builder.dao, builder.options);
         return builder.dao.count() - s;
     }
@@ -60,51 +74,96 @@ public class CsvImporter {
      * @throws SQLException
      */
     public static void load(IDao<?,?> dao, Options options) throws SQLException {
-        EntityReader<?> reader = null;
-        try {
-            Class<?> type = dao.getEntityType();
-            reader = new EntityReader<>(type, options);
-
-            if(options.truncated) {
-                // Delete data from table before loading csv
-                dao.removeAll();
-                dao.commitAndContinue();
-            }
+        if(options.truncated) {
+            // Delete data from table before loading csv
+            dao.removeAll();
+            dao.commitAndContinue();
+        }
 
-            Connection connection = dao.getJdbcConnection();
-            final boolean header = (options.skip == 1);
-            final String[] columns;
-            if (header) {
-                columns = columns(options);
-            } else {
-                SchemaParser parser = new SchemaParser(connection);
-                List<Column> list = parser.getColumns(options.schema, options.table);
-                columns = new String[list.size()];
-                for (int i=0; i<list.size(); i++) {
-                    columns[i] = list.get(i).getColumnName();
-                }
-            }
+        Connection connection = dao.getJdbcConnection();
+        final String[] columns = columns(connection, options);
+        if (options.parallel != 1) {
+            loadEntities(dao, options, columns);
+            dao.commitAndContinue();
+            return;
+        }
+        if (batchable(connection, options)) {
+            // The connection is committed by the transaction of the DAO
+            loadBatch(connection, options, columns, true);
+            dao.commitAndContinue();
+            return;
+        }
+        String sql;
+        if (connection.toString().contains("h2")) {
+            sql = generateLoadDataSql(options, columns, true);
+        } else {
+            sql = generateLoadDataSql(options, columns, false);
+        }
+        dao.executeNativeSQL(sql);
+        if (options.verbose) {
+            LOGGER.info(String.format("[CSV] import sql '%s'", sql));
+        }
+        dao.commitAndContinue();
+    }
 
-            String sql;
-            if (connection.toString().contains("h2")) {
-                sql = generateLoadDataSql(options, columns, true);
-            } else {
-                sql = generateLoadDataSql(options, columns, false);
+    /**
+     * Parse CSV file into entities and insert them with {@link IDao#insertAll(Iterator)}.
+     * The file is parsed in chunks on the parallel threads of the options, the records
+     * violating the entity constraints are skipped.
+     *
+     * @param dao JPA Data access object
+     * @param options Input source option of CSV or TSV file
+     * @param columns The table columns in the order of CSV fields
+     * @return The number of inserted entities
+     * @throws SQLException
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static long loadEntities(IDao dao, Options options, String[] columns) throws SQLException {
+        final long st = System.currentTimeMillis();
+        try (EntityReader<?> reader = new EntityReader<>(dao.getEntityType(), options, columns)) {
+            BulkResult<?> result = dao.insertAll(reader.entities);
+            if (!reader.error.isEmpty()) {
+                LOGGER.warning(String.format("[CSV] skipped %d invalid records of '%s' : %s",
+                        reader.error.size(), options.path, reader.error.keySet()));
             }
-            dao.executeNativeSQL(sql);
             if (options.verbose) {
-                LOGGER.info(String.format("[CSV] import sql '%s'", sql));
-            }
-            dao.commitAndContinue();
-        } catch (IOException e) {
-            throw new SQLException("Error occured while executing file. Cause: " + e.getMessage(), e);
-        } finally {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                throw new SQLException("Error occured while closing file. Cause: " + e.getMessage(), e);
+                long time = Math.max(1L, System.currentTimeMillis() - st);
+                LOGGER.info(String.format("[CSV] import %d entities into '%s' by %d parser threads - %dms (%d rows/s)",
+                        result.getCount(), options.table, options.parallel, time, result.getCount() * 1000L / time));
             }
+            return result.getCount();
+        } catch (IOException | RuntimeException e) {
+            throw new SQLException("Error occured while loading data from file to database. Cause: " + e.getMessage(), e);
+        }
+    }
+
+    private static String[] columns(Connection connection, Options options) throws SQLException {
+        final boolean header = (options.skip == 1);
+        if (header) {
+            return columns(options);
+        }
+        SchemaParser parser = new SchemaParser(connection);
+        List<Column> list = parser.getColumns(options.schema, options.table);
+        final String[] columns = new String[list.size()];
+        for (int i=0; i<list.size(); i++) {
+            columns[i] = list.get(i).getColumnName();
         }
+        return columns;
+    }
+
+    /**
+     * The JDBC batch import is used when it is enabled, when the file is gzip compressed
+     * or when the database supports neither H2 'CSVREAD' nor MySQL 'LOAD DATA'.
+     */
+    private static boolean batchable(Connection connection, Options options) throws SQLException {
+        if (options.batch || Compression.gzip(options.path)) {
+            return true;
+        }
+        if (connection.toString().contains("h2")) {
+            return false;
+        }
+        final String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        return !(product.contains("mysql") || product.contains("mariadb"));
     }
 
 
@@ -127,7 +186,7 @@ public class CsvImporter {
         String line = null;
         LineNumberReader reader = null;
         try {
-            reader = new LineNumberReader(Files.newBufferedReader(options.path));
+            reader = new LineNumberReader(Compression.reader(options.path));
             line = reader.readLine();
         } catch (IOException e) {
             throw new SQLException("Error occured while loading data from file to database. Cause: " + e.getMessage(), e);
@@ -183,6 +242,214 @@ public class CsvImporter {
         }
     }
 
+    /**
+     * Parse CSV file and insert the records in given table with JDBC batches.
+     * Empty values are inserted as NULL, and the text 'null' too in non character columns.
+     *
+     * @param connection Database connection
+     * @param options Input source option of CSV or TSV file
+     * @param columns The table columns in the order of CSV fields
+     * @return The number of inserted records
+     * @throws SQLException
+     */
+    static long loadBatch(Connection connection, Options options, String[] columns) throws SQLException {
+        return loadBatch(connection, options, columns, false);
+    }
+
+    /**
+     * @param managed The connection of a JPA transaction, neither committed nor rolled back here,
+     *        and the table already deleted by the DAO
+     */
+    private static long loadBatch(Connection connection, Options options, String[] columns, boolean managed) throws SQLException {
+        final long st = System.currentTimeMillis();
+        final boolean autoCommit = connection.getAutoCommit();
+        final int[] types = columnTypes(connection, options.table, columns);
+        final String sql = generateInsertSql(options, columns);
+        long count = 0L;
+        try (BufferedReader reader = Compression.reader(options.path);
+             BatchWriter writer = new BatchWriter(connection, prepare(connection, options, sql, managed), types, options, managed)) {
+            SeparatedTokenizer tokenizer = tokenizer(reader, options);
+            while (tokenizer.next()) {
+                writer.add(record(tokenizer, columns.length, options));
+            }
+            writer.finish();
+            count = writer.count;
+        } catch (SQLException | IOException | ParseException | RuntimeException e) {
+            if (!managed) {
+                connection.rollback();
+            }
+            throw new SQLException("Error occured while loading data from file to database. Cause: " + e.getMessage(), e);
+        } finally {
+            if (!managed) {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        if (options.verbose) {
+            long time = Math.max(1L, System.currentTimeMillis() - st);
+            LOGGER.info(String.format("[CSV] import %d rows into '%s' by batch of %d - %dms (%d rows/s)",
+                    count, options.table, options.batchSize, time, count * 1000L / time));
+        }
+        return count;
+    }
+
+    private static PreparedStatement prepare(Connection connection, Options options, String sql, boolean managed) throws SQLException {
+        if (!managed) {
+            connection.setAutoCommit(false);
+            truncate(connection, options);
+        }
+        if (options.verbose) {
+            LOGGER.info(String.format("[CSV] import sql '%s'", sql));
+        }
+        return connection.prepareStatement(sql);
+    }
+
+    static void truncate(Connection connection, Options options) throws SQLException {
+        if (options.truncated) {
+            // Delete data from table before loading csv
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DELETE FROM " + options.table);
+            }
+        }
+    }
+
+    static SeparatedTokenizer tokenizer(BufferedReader reader, Options options) throws IOException {
+        int skips = 0;
+        while (skips < options.skip && (null != reader.readLine())) {
+            ++skips;
+        }
+        return new SeparatedTokenizer(reader, SeparatedValues.delimiter(options.type));
+    }
+
+    static String[] record(SeparatedTokenizer tokenizer, int size, Options options) throws SQLException {
+        if (tokenizer.size() != size) {
+            throw new SQLException(String.format("Illegal field size (%1$d) not equals column size (%2$d) on %3$d line.",
+                    tokenizer.size(), size, tokenizer.getRow() + options.skip));
+        }
+        return tokenizer.toArray();
+    }
+
+    static String generateInsertSql(Options options, String[] columns) {
+        StringBuilder params = new StringBuilder();
+        for (int i=0; i<columns.length; i++) {
+            if (i > 0) {
+                params.append(",");
+            }
+            params.append("?");
+        }
+        return String.format("INSERT INTO %s (%s) VALUES (%s)", options.table, String.join(",", columns), params);
+    }
+
+    // The JDBC types of the columns, known without reading any row
+    static int[] columnTypes(Connection connection, String table, String[] columns) throws SQLException {
+        final String sql = String.format("SELECT %s FROM %s WHERE 1=0", String.join(",", columns), table);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int[] types = new int[columns.length];
+            for (int i=0; i<types.length; i++) {
+                types[i] = meta.getColumnType(i + 1);
+            }
+            return types;
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, int index, int type, String value) throws SQLException, ParseException {
+        if (value.isEmpty()) {
+            stmt.setNull(index, type);
+            return;
+        }
+        switch (type) {
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+        case Types.CLOB:
+        case Types.NCLOB:
+            stmt.setString(index, value);
+            return;
+        default:
+            break;
+        }
+        if ("null".equalsIgnoreCase(value)) {
+            stmt.setNull(index, type);
+            return;
+        }
+        switch (type) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+            stmt.setInt(index, Integer.parseInt(value));
+            break;
+        case Types.BIGINT:
+            stmt.setLong(index, Long.parseLong(value));
+            break;
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            stmt.setBigDecimal(index, new BigDecimal(value));
+            break;
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+            stmt.setDouble(index, Double.parseDouble(value));
+            break;
+        case Types.BIT:
+        case Types.BOOLEAN:
+            stmt.setBoolean(index, "1".equals(value) || Boolean.parseBoolean(value));
+            break;
+        case Types.DATE:
+            stmt.setDate(index, java.sql.Date.valueOf(DateParser.parseLocalDate(value)));
+            break;
+        case Types.TIME:
+            stmt.setTime(index, Time.valueOf(DateParser.parseLocalTime(value)));
+            break;
+        case Types.TIMESTAMP:
+        case Types.TIMESTAMP_WITH_TIMEZONE:
+            DateParser.Stamp stamp = DateParser.scan(value);
+            if (null != stamp) {
+                stmt.setTimestamp(index, Timestamp.valueOf(stamp.toLocalDateTime()));
+            } else {
+                stmt.setTimestamp(index, new Timestamp(DateParser.parseDate(value).getTime()));
+            }
+            break;
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+        case Types.BLOB:
+            stmt.setBytes(index, Base64.getDecoder().decode(value));
+            break;
+        default:
+            stmt.setObject(index, value);
+            break;
+        }
+    }
+
+    /**
+     * Parse CSV file and load in given database table.
+     * With more than one writer, a reader thread parses the records into a bounded queue
+     * and the writers insert them with JDBC batches, each one on its own connection.
+     *
+     * @param dataSource The data source of the writer connections
+     * @param options Input source option of CSV or TSV file
+     * @throws SQLException
+     */
+    public static void load(DataSource dataSource, Options options) throws SQLException {
+        if (options.writers <= 1) {
+            try (Connection connection = dataSource.getConnection()) {
+                load(connection, options);
+            }
+            return;
+        }
+        CsvPipeline.load(dataSource, options);
+    }
+
+    static String[] columns(DataSource dataSource, Options options) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return columns(connection, options);
+        }
+    }
+
     /**
      * Parse CSV file and load in given general database table.
      *
@@ -194,17 +461,10 @@ public class CsvImporter {
         if (null == connection || connection.isClosed()) {
             throw new SQLException("Not a valid connection.");
         }
-        final boolean header = (options.skip == 1);
-        final String[] columns;
-        if (header) {
-            columns = columns(options);
-        } else {
-            SchemaParser parser = new SchemaParser(connection);
-            List<Column> list = parser.getColumns(options.schema, options.table);
-            columns = new String[list.size()];
-            for (int i=0; i<list.size(); i++) {
-                columns[i] = list.get(i).getColumnName();
-            }
+        final String[] columns = columns(connection, options);
+        if (batchable(connection, options)) {
+            loadBatch(connection, options, columns);
+            return;
         }
         String sql;
         if (connection.toString().contains("h2")) {
@@ -223,16 +483,70 @@ public class CsvImporter {
         }
         List<String> lines = Files.readAllLines(table);
         for (String tab : lines) {
-            Options op = new Options(String.format("%s/%s.csv", path, tab), tab)
-                    .truncated(true)
-                    .skip(1);
-            options.add(op);
+            options.add(options(path, tab));
         }
         return options;
     }
 
+    private static Options options(String path, String tab) {
+        return new Options(TableOrdering.file(path, tab).toString(), tab)
+                .truncated(true)
+                .skip(1);
+    }
+
     /**
-     * Load all CSV data form file 'table-ordering.txt' to database
+     * The tables of file 'table-ordering.txt' one after another, or when the file
+     * does not exist, all the CSV files of the path in levels of foreign key dependency.
+     */
+    static List<List<Options>> levels(Connection connection, String path) throws SQLException, IOException {
+        List<List<Options>> levels = new ArrayList<>();
+        if (TableOrdering.exists(path)) {
+            for (Options op : options(path)) {
+                levels.add(Collections.singletonList(op));
+            }
+            return levels;
+        }
+        final String schema = TableOrdering.schema(connection);
+        for (List<String> tables : TableOrdering.levels(connection, schema, TableOrdering.tables(path))) {
+            List<Options> level = new ArrayList<>();
+            for (String tab : tables) {
+                Options op = options(path, tab);
+                if (null != schema) {
+                    op.schema(schema);
+                }
+                level.add(op);
+            }
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    /**
+     * Delete the tables before loading, the referring ones before the referred ones.
+     */
+    private static void truncate(Connection connection, List<List<Options>> levels) throws SQLException {
+        final boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                List<Options> level = levels.get(i);
+                for (int j = level.size() - 1; j >= 0; j--) {
+                    truncate(connection, level.get(j));
+                    level.get(j).truncated(false);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Load all CSV data form file 'table-ordering.txt' to database.
+     * Without the file, load all CSV files of the path in order of foreign key dependency.
      *
      * @param connection JDBC Connection
      * @param path The path of table ordering file.
@@ -240,15 +554,54 @@ public class CsvImporter {
      */
     public static void load(Connection connection, String path) throws SQLException {
         try {
-            List<Options> options = options(path);
-            for (Options op : options) {
-                load(connection, op);
+            final List<List<Options>> levels = levels(connection, path);
+            truncate(connection, levels);
+            for (List<Options> level : levels) {
+                for (Options op : level) {
+                    load(connection, op);
+                }
             }
         } catch (IOException e) {
             throw new SQLException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Load all CSV data of the path to database, the independent tables in parallel.
+     *
+     * @param dataSource The data source of the table connections
+     * @param path The path of CSV files and optional table ordering file.
+     * @throws SQLException
+     */
+    public static void load(DataSource dataSource, String path) throws SQLException {
+        load(dataSource, path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Load all CSV data of the path to database.
+     * The tables are deleted first, the referring ones before the referred ones,
+     * then each level of independent tables is loaded in parallel on separate connections.
+     *
+     * @param dataSource The data source of the table connections
+     * @param path The path of CSV files and optional table ordering file.
+     * @param threads The maximum number of tables loaded in parallel
+     * @throws SQLException
+     */
+    public static void load(DataSource dataSource, String path, int threads) throws SQLException {
+        final List<List<Options>> levels;
+        try (Connection connection = dataSource.getConnection()) {
+            levels = levels(connection, path);
+            truncate(connection, levels);
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+        TableOrdering.execute(levels, threads, op -> {
+            try (Connection connection = dataSource.getConnection()) {
+                load(connection, op);
+            }
+        });
+    }
+
     public static class Options {
         Path path = null;
         String schema = "PUBLIC";
@@ -256,10 +609,15 @@ public class CsvImporter {
         SeparatedValues.Type type = SeparatedValues.Type.CSV;
         String delimiter = ",";
         String quotation = "\"";
-        //int batchSize = Constants.DEFAULT_BATCH_SIZE;
+        int batchSize = Constants.DEFAULT_BATCH_SIZE;
+        int commitInterval = 10;
+        boolean batch = false;
+        int writers = 1;
         int skip = 0;
         boolean truncated = false;
         boolean verbose = false;
+        int parallel = 1;
+        boolean ordered = true;
 
         public Options() {}
         public Options(String p, String t) {
@@ -297,6 +655,70 @@ public class CsvImporter {
             return this;
         }
 
+        /**
+         * Insert the records with JDBC batches instead of 'CSVREAD' or 'LOAD DATA'.
+         *
+         * @param enable Use JDBC batch import on any database
+         */
+        public Options batch(boolean enable) {
+            batch = enable;
+            return this;
+        }
+
+        /**
+         * @param size The number of records in a JDBC batch
+         */
+        public Options batchSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException(String.format("Illegal batch size %d", size));
+            }
+            batchSize = size;
+            return this;
+        }
+
+        /**
+         * @param batches Commit every given number of JDBC batches, the load of a DAO commits once at the end
+         */
+        public Options commitInterval(int batches) {
+            if (batches < 1) {
+                throw new IllegalArgumentException(String.format("Illegal commit interval %d", batches));
+            }
+            commitInterval = batches;
+            return this;
+        }
+
+        /**
+         * Insert the records on given number of writer threads, used by {@link CsvImporter#load(DataSource, Options)}.
+         *
+         * @param threads Writer threads, each one with its own connection
+         */
+        public Options writers(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException(String.format("Illegal writer threads %d", threads));
+            }
+            writers = threads;
+            return this;
+        }
+
+        /**
+         * Parse the memory-mapped file in chunks on given number of threads, used by {@link CsvImporter#load(IDao, Options)}
+         * to insert the parsed entities instead of the rows.
+         *
+         * @param threads Parser threads, 1 is single thread reading, 0 is all available processors
+         */
+        public Options parallel(int threads) {
+            parallel = threads;
+            return this;
+        }
+
+        /**
+         * @param enable Keep the file order of parallel parsed entities
+         */
+        public Options ordered(boolean enable) {
+            ordered = enable;
+            return this;
+        }
+
         public Options type(String name) {
             if (null != name) {
                 if ("csv".equalsIgnoreCase(name)) {
@@ -362,6 +784,31 @@ public class CsvImporter {
             return this;
         }
 
+        public Builder batch(boolean enable) {
+            options.batch(enable);
+            return this;
+        }
+
+        public Builder batchSize(int size) {
+            options.batchSize(size);
+            return this;
+        }
+
+        public Builder commitInterval(int batches) {
+            options.commitInterval(batches);
+            return this;
+        }
+
+        public Builder parallel(int threads) {
+            options.parallel(threads);
+            return this;
+        }
+
+        public Builder ordered(boolean enable) {
+            options.ordered(enable);
+            return this;
+        }
+
         public CsvImporter build() {
             if (options.path == null || options.table == null) {
                 throw new IllegalArgumentException("Path or Table name not set.");
@@ -370,14 +817,77 @@ public class CsvImporter {
         }
     }
 
+    /**
+     * Binds records to a prepared INSERT statement and executes it in JDBC batches.
+     * The batches of a managed connection are committed by its JPA transaction.
+     */
+    static class BatchWriter implements AutoCloseable {
+        final Connection connection;
+        final PreparedStatement stmt;
+        final int[] types;
+        final int batchSize;
+        final int commitInterval;
+        final boolean managed;
+        long count = 0L;
+        long batches = 0L;
+
+        BatchWriter(Connection connection, PreparedStatement stmt, int[] types, Options options) {
+            this(connection, stmt, types, options, false);
+        }
+
+        BatchWriter(Connection connection, PreparedStatement stmt, int[] types, Options options, boolean managed) {
+            this.connection = connection;
+            this.stmt = stmt;
+            this.types = types;
+            this.batchSize = options.batchSize;
+            this.commitInterval = options.commitInterval;
+            this.managed = managed;
+        }
+
+        void add(String[] values) throws SQLException, ParseException {
+            for (int i=0; i<types.length; i++) {
+                bind(stmt, i + 1, types[i], values[i]);
+            }
+            stmt.addBatch();
+            if (++count % batchSize == 0) {
+                stmt.executeBatch();
+                if (++batches % commitInterval == 0 && !managed) {
+                    connection.commit();
+                }
+            }
+        }
+
+        void finish() throws SQLException {
+            if (count % batchSize != 0) {
+                stmt.executeBatch();
+            }
+            if (!managed) {
+                connection.commit();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            stmt.close();
+        }
+    }
+
     static class EntityReader<T> implements Closeable {
-        final BufferedReader reader;
+        final Closeable reader;
         final Iterator<T> entities;
         final Map<String, Set<ConstraintViolation<?>>> error = new HashMap<>();
 
-        EntityReader(Class<T> type, Options options) throws IOException {
-            reader = Files.newBufferedReader(options.path);
-            entities = SeparatedIterator.parse(reader, type, options.type, options.skip, error);
+        EntityReader(Class<T> type, Options options, String[] columns) throws IOException {
+            if (options.parallel != 1 && !Compression.gzip(options.path)) {
+                ParallelSeparatedIterator<T> it = ParallelSeparatedIterator.parse(options.path, StandardCharsets.UTF_8, type, options.type,
+                        () -> new EntityParser(type, columns), options.skip, error, options.parallel, options.ordered);
+                reader = it;
+                entities = it;
+            } else {
+                BufferedReader br = Compression.reader(options.path);
+                reader = br;
+                entities = SeparatedIterator.parse(br, type, options.type, new EntityParser(type, columns), options.skip, error);
+            }
         }
 
         public T readNext() {
@@ -0,0 +1,192 @@
+package net.tiny.dao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Pipelined CSV import.
+ * <p>
+ * The caller thread reads and tokenizes the file, and hands the records to the writers in chunks
+ * of the batch size through a bounded queue, so the reader blocks when the writers fall behind.
+ * Every writer converts and binds the records on its own connection and executes JDBC batches,
+ * then commits every commit interval batches. An error of the reader or of a writer stops all
+ * the stages, the writers roll back their pending batches, but the batches committed before
+ * stay in the table.
+ */
+final class CsvPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(CsvPipeline.class.getName());
+
+    // End of records marker
+    private static final String[][] END = new String[0][];
+
+    private final DataSource dataSource;
+    private final CsvImporter.Options options;
+    private final String[] columns;
+    private final BlockingQueue<String[][]> queue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private CsvPipeline(DataSource dataSource, CsvImporter.Options options, String[] columns) {
+        this.dataSource = dataSource;
+        this.options = options;
+        this.columns = columns;
+        this.queue = new ArrayBlockingQueue<>(options.writers * 2);
+    }
+
+    static long load(DataSource dataSource, CsvImporter.Options options) throws SQLException {
+        final String[] columns = CsvImporter.columns(dataSource, options);
+        return new CsvPipeline(dataSource, options, columns).run();
+    }
+
+    private long run() throws SQLException {
+        final long st = System.currentTimeMillis();
+        final String sql = CsvImporter.generateInsertSql(options, columns);
+        final int[] types;
+        try (Connection connection = dataSource.getConnection()) {
+            types = CsvImporter.columnTypes(connection, options.table, columns);
+            // Delete data from table once before the writers start
+            CsvImporter.truncate(connection, options);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        if (options.verbose) {
+            LOGGER.info(String.format("[CSV] import sql '%s'", sql));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(options.writers,
+                new ParallelSeparatedIterator.ParserThreadFactory("csv-writer"));
+        final List<Future<Long>> writers = new ArrayList<>();
+        try {
+            for (int i = 0; i < options.writers; i++) {
+                writers.add(executor.submit(() -> write(sql, types)));
+            }
+            read();
+            long count = 0L;
+            for (Future<Long> writer : writers) {
+                count += writer.get();
+            }
+            if (null != failure.get()) {
+                throw failed(failure.get());
+            }
+            if (options.verbose) {
+                long time = Math.max(1L, System.currentTimeMillis() - st);
+                LOGGER.info(String.format("[CSV] import %d rows into '%s' by %d writers - %dms (%d rows/s)",
+                        count, options.table, options.writers, time, count * 1000L / time));
+            }
+            return count;
+        } catch (ExecutionException e) {
+            throw failed((null != failure.get()) ? failure.get() : e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failed(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SQLException failed(Throwable cause) {
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        return new SQLException("Error occured while loading data from file to database. Cause: " + cause.getMessage(), cause);
+    }
+
+    // Reader stage on the caller thread
+    private void read() throws InterruptedException {
+        try (BufferedReader reader = Compression.reader(options.path)) {
+            SeparatedTokenizer tokenizer = CsvImporter.tokenizer(reader, options);
+            String[][] chunk = new String[options.batchSize][];
+            int size = 0;
+            while (null == failure.get() && tokenizer.next()) {
+                chunk[size++] = CsvImporter.record(tokenizer, columns.length, options);
+                if (size == chunk.length) {
+                    offer(chunk);
+                    chunk = new String[options.batchSize][];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                offer(Arrays.copyOf(chunk, size));
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (null != failure.get()) {
+                // Writers stop on the failure, drop the pending records
+                queue.clear();
+            }
+            for (int i = 0; i < options.writers; i++) {
+                offer(END);
+            }
+        }
+    }
+
+    // Gives up when a stage fails, the writers may be gone
+    private void offer(String[][] chunk) throws InterruptedException {
+        while (!queue.offer(chunk, 100L, TimeUnit.MILLISECONDS)) {
+            if (null != failure.get()) {
+                return;
+            }
+        }
+    }
+
+    // Writer stage, one connection per thread
+    private Long write(String sql, int[] types) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            try (CsvImporter.BatchWriter writer = new CsvImporter.BatchWriter(connection, connection.prepareStatement(sql), types, options)) {
+                String[][] chunk;
+                while ((chunk = queue.poll(100L, TimeUnit.MILLISECONDS)) != END) {
+                    if (null != failure.get()) {
+                        // Stop without waiting for the end of the records
+                        connection.rollback();
+                        return 0L;
+                    }
+                    if (null != chunk) {
+                        for (String[] record : chunk) {
+                            writer.add(record);
+                        }
+                    }
+                }
+                if (null != failure.get()) {
+                    connection.rollback();
+                    return 0L;
+                }
+                writer.finish();
+                return writer.count;
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            if (null != connection) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            throw e;
+        } finally {
+            if (null != connection) {
+                connection.close();
+            }
+        }
+    }
+}
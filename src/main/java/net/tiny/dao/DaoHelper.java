@@ -6,15 +6,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
 
@@ -28,6 +32,13 @@ public class DaoHelper {
 
     public static Logger LOGGER = Logger.getLogger(DaoHelper.class.getName());
 
+    private static final List<RowEstimator> ESTIMATORS = new CopyOnWriteArrayList<RowEstimator>(
+            new RowEstimator[] {RowEstimator.H2, RowEstimator.POSTGRESQL, RowEstimator.MYSQL});
+
+    // Database product names by entity manager factory
+    private static final Map<EntityManagerFactory, String> PRODUCTS =
+            Collections.synchronizedMap(new WeakHashMap<EntityManagerFactory, String>());
+
     public static Connection getConnection(EntityManager em) {
         return em.unwrap(Connection.class);
     }
@@ -148,6 +159,102 @@ public class DaoHelper {
         return num;
     }
 
+    public static Map<String, Long> estimateCountAll(Connection conn) throws SQLException {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        List<String> tables = tableNames(conn);
+        for(String table : tables) {
+            map.put(table, estimateCount(conn, table));
+        }
+        return map;
+    }
+
+    /**
+     * Returns the estimated number of rows from the database statistics,
+     * or the exact count if the database or the table has no statistics.
+     */
+    public static long estimateCount(Connection conn, String table) throws SQLException {
+        final String product = conn.getMetaData().getDatabaseProductName();
+        for (RowEstimator estimator : ESTIMATORS) {
+            if (estimator.supports(product)) {
+                long rows = estimator.estimate(conn, table);
+                if (rows > 0L) {
+                    return rows;
+                }
+                break;
+            }
+        }
+        // An empty table, or never analyzed
+        return count(conn, table);
+    }
+
+    /**
+     * Returns the estimated number of rows read through native queries of the entity manager,
+     * so no transaction is needed to reach the connection, or the exact count if the database
+     * or the table has no statistics.
+     */
+    public static long estimateCount(EntityManager em, String table) {
+        final String product = getDatabaseProduct(em);
+        for (RowEstimator estimator : ESTIMATORS) {
+            if (estimator.supports(product)) {
+                long rows = estimator.estimate(em, table);
+                if (rows > 0L) {
+                    return rows;
+                }
+                break;
+            }
+        }
+        // An empty table, or never analyzed
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult()).longValue();
+    }
+
+    /**
+     * Returns the database product name of the connection meta data, or of the JDBC URL of the
+     * persistence unit when the entity manager has no connection outside a transaction.
+     */
+    static String getDatabaseProduct(EntityManager em) {
+        final EntityManagerFactory emf = em.getEntityManagerFactory();
+        String product = PRODUCTS.get(emf);
+        if (null != product) {
+            return product;
+        }
+        try {
+            final Connection conn = em.unwrap(Connection.class);
+            if (null != conn) {
+                product = conn.getMetaData().getDatabaseProductName();
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Not a JDBC entity manager
+        }
+        if (null == product) {
+            final Object url = emf.getProperties().get("javax.persistence.jdbc.url");
+            product = (null == url) ? null : productOf(url.toString());
+        }
+        if (null != product) {
+            PRODUCTS.put(emf, product);
+        }
+        return product;
+    }
+
+    private static String productOf(String url) {
+        if (url.startsWith("jdbc:h2:")) {
+            return "H2";
+        } else if (url.startsWith("jdbc:postgresql:")) {
+            return "PostgreSQL";
+        } else if (url.startsWith("jdbc:mysql:")) {
+            return "MySQL";
+        } else if (url.startsWith("jdbc:mariadb:")) {
+            return "MariaDB";
+        }
+        return null;
+    }
+
+    /**
+     * Adds a dialect of the estimated counts, before the registered ones.
+     */
+    public static void addRowEstimator(RowEstimator estimator) {
+        ESTIMATORS.add(0, estimator);
+    }
+
     /**
      * Returns the table name for a given entity type in the {@link EntityManager}.
      * @param em
@@ -188,6 +295,23 @@ public class DaoHelper {
         }
     }
 
+    static <T> T min(Connection conn, String table, String column, Class<T> type) throws SQLException {
+        Object minValue = null;
+        Statement stmt =conn.createStatement();
+        String sql = "SELECT min(" + column + ") FROM " + table;
+        try {
+            ResultSet res = stmt.executeQuery(sql);
+            if(res.next()) {
+                minValue = res.getObject(1);
+            }
+            close(res);
+            return  type.cast(minValue);
+        } catch(SQLException ex) {
+            //Not found column 'ID'
+            return null;
+        }
+    }
+
     /**
      * Closes a ResultSet returned by {@link #executeQuery(String)}.
      */
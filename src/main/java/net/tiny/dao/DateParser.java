@@ -0,0 +1,272 @@
+package net.tiny.dao;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Date and time parser of column values.
+ * <p>
+ * The shapes of {@link EntityParser#DATE_PATTERNS} are detected by the length and the separator
+ * positions of a value, then the digits are scanned directly: no formatter is created and no exception
+ * is thrown for a well-formed value. Any other value falls back to trying the patterns in order with
+ * shared formatters, which also reports the parse error of the last pattern.
+ */
+final class DateParser {
+
+    private static final DateTimeFormatter[] FORMATTERS = formatters(EntityParser.DATE_PATTERNS);
+
+    // SimpleDateFormat is not thread safe, keep one set per thread
+    private static final ThreadLocal<SimpleDateFormat[]> DATE_FORMATS = ThreadLocal.withInitial(() -> {
+        SimpleDateFormat[] formats = new SimpleDateFormat[EntityParser.DATE_PATTERNS.length];
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = new SimpleDateFormat(EntityParser.DATE_PATTERNS[i]);
+        }
+        return formats;
+    });
+
+    private DateParser() {}
+
+    static LocalDateTime parseLocalDateTime(String value) throws DateTimeParseException {
+        Stamp stamp = scan(value);
+        if (null != stamp && stamp.time) {
+            return stamp.toLocalDateTime();
+        }
+        DateTimeParseException error = null;
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return LocalDateTime.parse(value, formatter);
+            } catch (DateTimeParseException ex) {
+                error = ex;
+            }
+        }
+        throw error;
+    }
+
+    static LocalDate parseLocalDate(String value) throws DateTimeParseException {
+        Stamp stamp = scan(value);
+        if (null != stamp) {
+            return LocalDate.of(stamp.year, stamp.month, stamp.day);
+        }
+        DateTimeParseException error = null;
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return LocalDate.parse(value, formatter);
+            } catch (DateTimeParseException ex) {
+                error = ex;
+            }
+        }
+        throw error;
+    }
+
+    static LocalTime parseLocalTime(String value) throws DateTimeParseException {
+        Stamp stamp = scan(value);
+        if (null != stamp && stamp.time) {
+            return LocalTime.of(stamp.hour, stamp.minute, stamp.second, stamp.nano);
+        }
+        DateTimeParseException error = null;
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return LocalTime.parse(value, formatter);
+            } catch (DateTimeParseException ex) {
+                error = ex;
+            }
+        }
+        throw error;
+    }
+
+    static Date parseDate(String value) throws ParseException {
+        Stamp stamp = scan(value);
+        if (null != stamp) {
+            LocalDateTime dateTime = stamp.toLocalDateTime();
+            if (stamp.zoned) {
+                return Date.from(dateTime.toInstant(ZoneOffset.ofTotalSeconds(stamp.offset)));
+            }
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+        }
+        ParseException error = null;
+        for (SimpleDateFormat format : DATE_FORMATS.get()) {
+            try {
+                return format.parse(value);
+            } catch (ParseException ex) {
+                error = ex;
+            }
+        }
+        throw error;
+    }
+
+    /**
+     * Scan a value of the shapes 'yyyy-MM-dd', 'yyyy/MM/dd', 'yyyyMMdd', 'yyyy-MM-dd HH:mm:ss[.S...]',
+     * 'yyyy/MM/dd HH:mm:ss', 'yyyyMMddHHmmss' and 'yyyy-MM-dd'T'HH:mm:ss.SSSX'.
+     *
+     * @param value Column value
+     * @return The scanned fields, or null when the value has another shape or a field is out of range
+     */
+    static Stamp scan(String value) {
+        final int length = value.length();
+        Stamp stamp = new Stamp();
+        if (length == 8 || length == 14) {
+            // yyyyMMdd, yyyyMMddHHmmss
+            stamp.year = digits(value, 0, 4);
+            stamp.month = digits(value, 4, 6);
+            stamp.day = digits(value, 6, 8);
+            if (length == 14) {
+                stamp.time = true;
+                stamp.hour = digits(value, 8, 10);
+                stamp.minute = digits(value, 10, 12);
+                stamp.second = digits(value, 12, 14);
+            }
+            return stamp.valid() ? stamp : null;
+        }
+        if (length < 10) {
+            return null;
+        }
+        final char separator = value.charAt(4);
+        if ((separator != '-' && separator != '/') || value.charAt(7) != separator) {
+            return null;
+        }
+        stamp.year = digits(value, 0, 4);
+        stamp.month = digits(value, 5, 7);
+        stamp.day = digits(value, 8, 10);
+        if (length == 10) {
+            return stamp.valid() ? stamp : null;
+        }
+        if (length < 19 || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+        final char delimiter = value.charAt(10);
+        stamp.time = true;
+        stamp.hour = digits(value, 11, 13);
+        stamp.minute = digits(value, 14, 16);
+        stamp.second = digits(value, 17, 19);
+        if (delimiter == ' ') {
+            if (length > 19 && (separator != '-' || fraction(value, 19, length, stamp) != length)) {
+                return null;
+            }
+        } else if (delimiter == 'T' && separator == '-' && length > 19) {
+            int pos = fraction(value, 19, length, stamp);
+            if (pos < 0 || !offset(value, pos, stamp)) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return stamp.valid() ? stamp : null;
+    }
+
+    // Parse '.S...' from the position, return the end position or -1
+    private static int fraction(String value, int start, int end, Stamp stamp) {
+        if (value.charAt(start) != '.') {
+            return -1;
+        }
+        int pos = start + 1;
+        int nano = 0;
+        int scale = 100000000;
+        while (pos < end && pos - start <= 9) {
+            char c = value.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            nano += (c - '0') * scale;
+            scale /= 10;
+            pos++;
+        }
+        if (pos == start + 1) {
+            return -1;
+        }
+        stamp.nano = nano;
+        return pos;
+    }
+
+    // Parse 'Z', '+HH', '+HHmm' or '+HH:mm' up to the end of the value
+    private static boolean offset(String value, int start, Stamp stamp) {
+        final int length = value.length() - start;
+        final char sign = (length > 0) ? value.charAt(start) : ' ';
+        if (sign == 'Z') {
+            stamp.zoned = (length == 1);
+            return stamp.zoned;
+        }
+        if (sign != '+' && sign != '-') {
+            return false;
+        }
+        int hours = (length >= 3) ? digits(value, start + 1, start + 3) : -1;
+        int minutes;
+        if (length == 3) {
+            minutes = 0;
+        } else if (length == 5) {
+            minutes = digits(value, start + 3, start + 5);
+        } else if (length == 6 && value.charAt(start + 3) == ':') {
+            minutes = digits(value, start + 4, start + 6);
+        } else {
+            return false;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return false;
+        }
+        int seconds = hours * 3600 + minutes * 60;
+        if (seconds > 18 * 3600) {
+            return false;
+        }
+        stamp.offset = (sign == '-') ? -seconds : seconds;
+        stamp.zoned = true;
+        return true;
+    }
+
+    // Decimal value of the digits, or -1 when a character is not a digit
+    private static int digits(String value, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    private static DateTimeFormatter[] formatters(String[] patterns) {
+        DateTimeFormatter[] formatters = new DateTimeFormatter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            formatters[i] = DateTimeFormatter.ofPattern(patterns[i]);
+        }
+        return formatters;
+    }
+
+    static final class Stamp {
+        int year;
+        int month;
+        int day;
+        int hour;
+        int minute;
+        int second;
+        int nano;
+        boolean time;
+        boolean zoned;
+        int offset;
+
+        boolean valid() {
+            if (year < 0 || month < 1 || month > 12 || day < 1) {
+                return false;
+            }
+            int days = (month == 2) ? (Year.isLeap(year) ? 29 : 28)
+                    : ((month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31);
+            if (day > days) {
+                return false;
+            }
+            return !time || (hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59);
+        }
+
+        LocalDateTime toLocalDateTime() {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package net.tiny.dao;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
+
+/**
+ * Read through cache of the entities by ID, enabled by entity type.
+ * <p>
+ * {@link IDao#find(Serializable)} reads the cache of the entity type before the entity manager and
+ * puts the entities it loads outside a transaction, so no uncommitted change is cached. The
+ * cache stores by value, so a hit is a detached copy of the entity, merge it to save. The entities are evicted when they are updated or deleted through
+ * a DAO, and the whole type is cleared by the bulk deletes, the named updates and the native
+ * SQL of the DAOs. Writes that bypass the DAOs (JDBC, CSV imports, changes of managed entities
+ * without update) are only seen after the time to live.
+ * <p>
+ * A hit costs the deserialization of the copy, tens of microseconds. The EclipseLink shared
+ * cache serves a find faster, enable this cache where the provider has no second level cache
+ * or to share the entities across nodes with a distributed JCache provider.
+ */
+public final class EntityCache {
+
+    /** Prefix of the JCache names, followed by the entity class name */
+    public static final String CACHE_PREFIX = "tiny-dao.";
+
+    private static final Map<Class<?>, EntityCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Cache<Object, Object> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private EntityCache(Cache<Object, Object> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Enables the cache of an entity type on the default caching provider.
+     *
+     * @param entityType The serializable entity class
+     * @param maxEntries The maximum number of entities, 0 for the provider default
+     * @param ttl The time to live in milliseconds, rounded up to seconds, 0 for no expiry
+     */
+    public static void enable(Class<?> entityType, long maxEntries, long ttl) {
+        if (!Serializable.class.isAssignableFrom(entityType)) {
+            throw new IllegalArgumentException(String.format("Not serializable entity '%s'", entityType.getName()));
+        }
+        final CacheManager manager = Caching.getCachingProvider().getCacheManager();
+        final String name = CACHE_PREFIX + entityType.getName();
+        if (null != manager.getCache(name)) {
+            manager.destroyCache(name);
+        }
+        final MutableConfiguration<Object, Object> config = new MutableConfiguration<Object, Object>()
+                .setStoreByValue(true)
+                .setExpiryPolicyFactory(ttl > 0L
+                        ? CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, (ttl + 999L) / 1000L))
+                        : EternalExpiryPolicy.factoryOf());
+        final Cache<Object, Object> cache = manager.createCache(name, config);
+        if (maxEntries > 0L && cache.getClass().getName().startsWith("org.ehcache.jcache.")) {
+            Ehcache.limit(cache, maxEntries);
+        }
+        enable(entityType, cache);
+    }
+
+    /**
+     * Enables the cache of an entity type on a cache configured by the caller.
+     *
+     * @param entityType The entity class
+     * @param cache The cache of the entities by ID
+     */
+    public static void enable(Class<?> entityType, Cache<Object, Object> cache) {
+        CACHES.put(entityType, new EntityCache(cache));
+    }
+
+    public static void disable(Class<?> entityType) {
+        final EntityCache entityCache = CACHES.remove(entityType);
+        if (null != entityCache) {
+            entityCache.cache.clear();
+        }
+    }
+
+    public static boolean isEnabled(Class<?> entityType) {
+        return CACHES.containsKey(entityType);
+    }
+
+    /**
+     * @return The number of finds served by the cache since it was enabled
+     */
+    public static long getHits(Class<?> entityType) {
+        final EntityCache entityCache = CACHES.get(entityType);
+        return (null == entityCache) ? 0L : entityCache.hits.sum();
+    }
+
+    /**
+     * @return The number of finds read from the entity manager since the cache was enabled
+     */
+    public static long getMisses(Class<?> entityType) {
+        final EntityCache entityCache = CACHES.get(entityType);
+        return (null == entityCache) ? 0L : entityCache.misses.sum();
+    }
+
+    static EntityCache get(Class<?> entityType) {
+        return CACHES.isEmpty() ? null : CACHES.get(entityType);
+    }
+
+    static void evict(Class<?> entityType, Object id) {
+        final EntityCache entityCache = get(entityType);
+        if (null != entityCache && null != id) {
+            entityCache.cache.remove(id);
+        }
+    }
+
+    static void clear(Class<?> entityType) {
+        final EntityCache entityCache = get(entityType);
+        if (null != entityCache) {
+            entityCache.cache.clear();
+        }
+    }
+
+    <T> T get(Object id, Class<T> entityType) {
+        final Object entity = cache.get(id);
+        if (null == entity) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entityType.cast(entity);
+    }
+
+    void put(Object id, Object entity) {
+        cache.put(id, entity);
+    }
+
+    /**
+     * Loaded only on the Ehcache provider, JCache has no size limit.
+     */
+    static final class Ehcache {
+        static void limit(Cache<Object, Object> cache, long maxEntries) {
+            cache.unwrap(net.sf.ehcache.Ehcache.class).getCacheConfiguration().setMaxEntriesLocalHeap(maxEntries);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package net.tiny.dao;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -8,11 +12,9 @@ import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Base64;
@@ -25,8 +27,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import javax.persistence.Column;
 import javax.persistence.Embedded;
@@ -45,9 +47,12 @@ public class EntityParser {
 
 	private static final Logger LOGGER = Logger.getLogger(EntityParser.class.getName());
 
+	private static final Map<Class<?>, Converter> CONVERTERS = converters();
+
 	private ColumnField[] columnFields;
 	private boolean isNull = true;
 	private Map<Alias, String> fieldAlias = new HashMap<>();
+	Binder binder;
 
 	public EntityParser() {
 	}
@@ -77,11 +82,14 @@ public class EntityParser {
 	}
 
 	protected <T> T parse(Class<T> type, List<String> params, Validator validator) throws Exception {
-		if( params.size() != this.columnFields.length) {
-			String msg = String.format("Illegal field size (%1$d) not equals column size (%2$d).", params.size(), this.columnFields.length);
+		return parse(type, params.toArray(new String[params.size()]), validator);
+	}
+
+	protected <T> T parse(Class<T> type, String[] values, Validator validator) throws Exception {
+		if( values.length != this.columnFields.length) {
+			String msg = String.format("Illegal field size (%1$d) not equals column size (%2$d).", values.length, this.columnFields.length);
 			throw new IllegalArgumentException(msg);
 		}
-		String[] values = params.toArray(new String[params.size()]);
 		return parseEntity(type, this.columnFields, values, validator);
 	}
 
@@ -105,12 +113,14 @@ public class EntityParser {
 	}
 
 	protected <T> T parseEntity(Class<T> type, ColumnField[] fields, String[] values, Validator validator) throws Exception {
-		T entity = type.cast(type.newInstance());
-		for(int i=0; i < fields.length; i++) {
-			ColumnField field = fields[i];
-			String value = values[i];
-			setFieldValue(entity, field.field, value);
+		Binder binder = this.binder;
+		if(null == binder || !binder.matches(type, fields)) {
+			// Compile setters and converters once, reuse them for all records
+			binder = new Binder(type, fields);
+			this.binder = binder;
 		}
+		T entity = type.cast(binder.newInstance());
+		binder.bind(entity, values);
 		if(null != validator) {
 	        Set<ConstraintViolation<T>> violations = validator.validate(entity);
 	        if(!violations.isEmpty()) {
@@ -120,68 +130,99 @@ public class EntityParser {
 		return entity;
 	}
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public static Object convert(String value, Class<?> type, boolean nullable) throws ParseException {
     	if(null == value)
     		return null;
 		if(nullable && "null".equalsIgnoreCase(value)) {
 			return null;
 		}
-        Object data = null;
-		if(String.class.equals(type)) {
-			data = value;
-		} else if(char.class.equals(type)) {
-			data = value.isEmpty() ? null : value.charAt(0);
-		} else if(Character.class.equals(type)) {
-			data = value.isEmpty() ? null : new Character(value.charAt(0));
-		} else if(int.class.equals(type) || Integer.class.equals(type)) {
-			data = Integer.parseInt(value);
-		} else if(short.class.equals(type) || Short.class.equals(type)) {
-			data = Long.parseLong(value);
-		} else if(long.class.equals(type) || Long.class.equals(type)) {
-			data = Long.parseLong(value);
-		} else if(float.class.equals(type) || Float.class.equals(type)) {
-			data = Float.parseFloat(value);
-		} else if(double.class.equals(type) || Double.class.equals(type)) {
-			data = Double.parseDouble(value);
-		} else if(boolean.class.equals(type) || Boolean.class.equals(type)) {
-			data = Boolean.parseBoolean(value);
-		} else if(type.isArray() && type.isAssignableFrom(byte[].class)) {
-			data = Base64.getDecoder().decode(value);
-		} else if(BigDecimal.class.equals(type)) {
-			data = new BigDecimal(value);
-		} else if(BigInteger.class.equals(type)) {
-			data = new BigInteger(value);
-		} else if (type.isEnum()) {
-			if(Pattern.matches("[0-9]+", value)) {
-				// Digit value by Enum.value
-				data = value.isEmpty() ? null : lookupEnum((Class<? extends Enum>)type, Integer.parseInt(value));
-			} else {
-				// String value by Enum.name
-				data = value.isEmpty() ? null : type.cast(Enum.valueOf((Class<? extends Enum>)type, value));
-			}
-		} else if(java.util.Calendar.class.equals(type)) {
-			Calendar calendar = Calendar.getInstance();
-			calendar.setTime(parseDate(value));
-			data = calendar;
-		} else if(java.time.LocalDate.class.equals(type)) {
-			data = parseLocalDate(value);
-		} else if(java.time.LocalDateTime.class.equals(type)) {
-			data = parseLocalDateTime(value);
-		} else if(java.time.LocalTime.class.equals(type)) {
-			data = parseLocalTime(value);
-		} else if(java.util.Date.class.equals(type)) {
-			data = parseDate(value);
-		} else if(java.sql.Date.class.equals(type)) {
-			data = new java.sql.Date(parseDate(value).getTime());
-		} else if(java.sql.Time.class.equals(type)) {
-			data = new java.sql.Time(parseDate(value).getTime());
-		} else if(java.sql.Timestamp.class.equals(type)) {
-			data = new java.sql.Timestamp(parseDate(value).getTime());
-		} else {
+		Converter converter = getConverter(type);
+		if(null == converter) {
 			throw new TypeNotPresentException(type.getName(), null);
 		}
-		return data;
+		try {
+			return converter.convert(value);
+		} catch (ParseException | RuntimeException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IllegalArgumentException(ex.getMessage(), ex);
+		}
+    }
+
+    /**
+     * Lookup the cached converter of the simple value type.
+     *
+     * @param type Field type
+     * @return Converter or null when the type is not a simple value type
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Converter getConverter(final Class<?> type) {
+    	Converter converter = CONVERTERS.get(type);
+    	if(null == converter && type.isEnum()) {
+    		final Object[] constants = type.getEnumConstants();
+    		converter = value -> {
+    			if(value.isEmpty()) {
+    				return null;
+    			}
+    			if(isDigits(value)) {
+    				// Digit value by Enum.value
+    				int ordinal = Integer.parseInt(value);
+    				if(ordinal < constants.length) {
+    					return constants[ordinal];
+    				}
+    				throw new IllegalArgumentException("Invalid value " + ordinal + " for " + type.getName( ) + ", must be < " + constants.length);
+    			}
+    			// String value by Enum.name
+    			return Enum.valueOf((Class<? extends Enum>)type, value);
+    		};
+    		CONVERTERS.putIfAbsent(type, converter);
+    	}
+    	return converter;
+    }
+
+    private static boolean isDigits(String value) {
+    	for(int i=0; i<value.length(); i++) {
+    		char c = value.charAt(i);
+    		if(c < '0' || c > '9') {
+    			return false;
+    		}
+    	}
+    	return !value.isEmpty();
+    }
+
+    private static Map<Class<?>, Converter> converters() {
+    	Map<Class<?>, Converter> map = new ConcurrentHashMap<>();
+    	map.put(String.class, value -> value);
+    	map.put(char.class, value -> value.isEmpty() ? null : value.charAt(0));
+    	map.put(Character.class, value -> value.isEmpty() ? null : Character.valueOf(value.charAt(0)));
+    	map.put(int.class, Integer::parseInt);
+    	map.put(Integer.class, Integer::parseInt);
+    	map.put(short.class, Short::parseShort);
+    	map.put(Short.class, Short::parseShort);
+    	map.put(long.class, Long::parseLong);
+    	map.put(Long.class, Long::parseLong);
+    	map.put(float.class, Float::parseFloat);
+    	map.put(Float.class, Float::parseFloat);
+    	map.put(double.class, Double::parseDouble);
+    	map.put(Double.class, Double::parseDouble);
+    	map.put(boolean.class, Boolean::parseBoolean);
+    	map.put(Boolean.class, Boolean::parseBoolean);
+    	map.put(byte[].class, value -> Base64.getDecoder().decode(value));
+    	map.put(BigDecimal.class, BigDecimal::new);
+    	map.put(BigInteger.class, BigInteger::new);
+    	map.put(java.util.Calendar.class, value -> {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTime(parseDate(value));
+			return calendar;
+    	});
+    	map.put(java.time.LocalDate.class, EntityParser::parseLocalDate);
+    	map.put(java.time.LocalDateTime.class, EntityParser::parseLocalDateTime);
+    	map.put(java.time.LocalTime.class, EntityParser::parseLocalTime);
+    	map.put(java.util.Date.class, EntityParser::parseDate);
+    	map.put(java.sql.Date.class, value -> new java.sql.Date(parseDate(value).getTime()));
+    	map.put(java.sql.Time.class, value -> new java.sql.Time(parseDate(value).getTime()));
+    	map.put(java.sql.Timestamp.class, value -> new java.sql.Timestamp(parseDate(value).getTime()));
+    	return map;
     }
 
     private Object convert(String value, boolean nullable, Field field) throws Exception {
@@ -196,6 +237,16 @@ public class EntityParser {
     private Object convertEntity(Field field, String value) throws Exception {
     	Class<?> type = field.getType();
     	Object data = type.newInstance();
+		String key = getEntityKey(field);
+		if(null != key) {
+			ColumnField f = getColumnField(type, key);
+			setFieldValue(data, f.field, value);
+		}
+		return data;
+    }
+
+    private String getEntityKey(Field field) {
+    	Class<?> type = field.getType();
 		Alias alias = new Alias(type, field.getName());
 		String key = this.fieldAlias.get(alias);
 		if(null == key) {
@@ -215,11 +266,7 @@ public class EntityParser {
 			}
 			LOGGER.fine(String.format("The field '%1$s' alias to '%2$s#%3s'", field.getName(), type.getName(), key));
 		}
-		if(null != key) {
-			ColumnField f = getColumnField(type, key);
-			setFieldValue(data, f.field, value);
-		}
-		return data;
+		return key;
     }
 
     protected void setFieldValue(Object bean, Field field, String value) throws Exception  {
@@ -478,61 +525,170 @@ public class EntityParser {
      * @return 日期
      */
     static LocalDateTime parseLocalDateTime(String parameter) throws DateTimeParseException {
-    	DateTimeParseException error = null;
-        for(String pattern : DATE_PATTERNS) {
-        	DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-            try {
-                return LocalDateTime.parse(parameter, formatter);
-            } catch (DateTimeParseException ex) {
-                error = ex;
-                continue;
-            }
-        }
-        throw error;
+        return DateParser.parseLocalDateTime(parameter);
     }
 
     static LocalDate parseLocalDate(String parameter) throws DateTimeParseException {
-    	DateTimeParseException error = null;
-        for(String pattern : DATE_PATTERNS) {
-        	DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-            try {
-                return LocalDate.parse(parameter, formatter);
-            } catch (DateTimeParseException ex) {
-                error = ex;
-                continue;
-            }
-        }
-        throw error;
+        return DateParser.parseLocalDate(parameter);
     }
 
     static LocalTime parseLocalTime(String parameter) throws DateTimeParseException {
-    	DateTimeParseException error = null;
-        for(String pattern : DATE_PATTERNS) {
-        	DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-            try {
-                return LocalTime.parse(parameter, formatter);
-            } catch (DateTimeParseException ex) {
-                error = ex;
-                continue;
-            }
-        }
-        throw error;
+        return DateParser.parseLocalTime(parameter);
     }
 
     static Date parseDate(String parameter) throws ParseException {
-        ParseException error = null;
-        for(String pattern : DATE_PATTERNS) {
-            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
-            try {
-                return sdf.parse(parameter);
-            } catch (ParseException ex) {
-                error = ex;
-                continue;
-            }
-        }
-        throw error;
+        return DateParser.parseDate(parameter);
     }
 
+	/**
+	 * Converter of a string value to a field value.
+	 */
+	@FunctionalInterface
+	interface Converter {
+		Object convert(String value) throws Exception;
+	}
+
+	/**
+	 * Compiled binding of a column value to a field, the setter is resolved and the converter is chosen once.
+	 */
+	static final class Binding {
+		final MethodHandle setter;
+		final Converter converter;
+		final boolean nullable;
+
+		Binding(Field field, Converter converter, boolean nullable) throws IllegalAccessException {
+			field.setAccessible(true);
+			this.setter = MethodHandles.lookup().unreflectSetter(field)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			this.converter = converter;
+			this.nullable = nullable;
+		}
+
+		void bind(Object bean, String value) throws Exception {
+			if(value == null || (nullable && "null".equalsIgnoreCase(value))) {
+				return;
+			}
+			Object data = converter.convert(value);
+			if(null != data) {
+				try {
+					setter.invokeExact(bean, data);
+				} catch (Exception | Error ex) {
+					throw ex;
+				} catch (Throwable ex) {
+					throw new IllegalStateException(ex.getMessage(), ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Binding plan of an entity type and its column fields.
+	 */
+	final class Binder {
+		final Class<?> type;
+		final ColumnField[] fields;
+		final MethodHandle constructor;
+		final Binding[] bindings;
+
+		Binder(Class<?> type, ColumnField[] fields) throws ReflectiveOperationException {
+			this.type = type;
+			this.fields = fields;
+			this.constructor = constructor(type);
+			this.bindings = new Binding[fields.length];
+			for(int i=0; i<fields.length; i++) {
+				bindings[i] = binding(fields[i].field);
+			}
+		}
+
+		// The fields of parse(Class, Map) are looked up again for every record
+		boolean matches(Class<?> type, ColumnField[] fields) {
+			if(this.type != type || this.fields.length != fields.length) {
+				return false;
+			}
+			for(int i=0; i<fields.length; i++) {
+				if(!this.fields[i].field.equals(fields[i].field)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		Object newInstance() throws Exception {
+			return instantiate(constructor);
+		}
+
+		void bind(Object bean, String[] values) throws Exception {
+			for(int i=0; i<bindings.length; i++) {
+				bindings[i].bind(bean, values[i]);
+			}
+		}
+
+		private Binding binding(Field field) throws ReflectiveOperationException {
+			Converter converter = getConverter(field.getType());
+			if(null == converter) {
+				converter = entityConverter(field);
+			}
+			return new Binding(field, converter, isNull);
+		}
+
+		// Relationship field: create the entity and set the referenced key only
+		private Converter entityConverter(Field field) throws ReflectiveOperationException {
+			final Instantiator entity = new Instantiator(field.getType());
+			final String key = getEntityKey(field);
+			if(null == key) {
+				return value -> entity.newInstance();
+			}
+			final Binding binding;
+			try {
+				binding = binding(getColumnField(field.getType(), key).field);
+			} catch (NoSuchFieldException ex) {
+				return value -> { throw ex; };
+			}
+			return value -> {
+				Object data = entity.newInstance();
+				binding.bind(data, value);
+				return data;
+			};
+		}
+	}
+
+	/**
+	 * Constructor of a relationship entity, resolved at the first value.
+	 * A collection or interface field fails only when it has a value.
+	 */
+	static final class Instantiator {
+		final Class<?> type;
+		MethodHandle constructor;
+
+		Instantiator(Class<?> type) {
+			this.type = type;
+		}
+
+		Object newInstance() throws Exception {
+			if(null == constructor) {
+				constructor = constructor(type);
+			}
+			return instantiate(constructor);
+		}
+	}
+
+	private static MethodHandle constructor(Class<?> type) throws ReflectiveOperationException {
+		Constructor<?> constructor = type.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return MethodHandles.lookup().unreflectConstructor(constructor)
+				.asType(MethodType.methodType(Object.class));
+	}
+
+	private static Object instantiate(MethodHandle constructor) throws Exception {
+		try {
+			return constructor.invokeExact();
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new IllegalStateException(ex.getMessage(), ex);
+		}
+	}
+
 	public static class ColumnField {
 		final Class<?> type;
 		final Field field;
@@ -12,6 +12,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Table;
@@ -33,6 +34,8 @@ import net.tiny.ws.ResponseHeaderHelper;
  * GET    /dao/v1/{entity}/{id}
  * GET    /dao/v1/{entity}/list?size=99
  * GET    /dao/v1/{entity}/count
+ * GET    /dao/v1/{entity}/count?estimate=true
+ * GET    /dao/v1/{entity}/cache
  * POST   /dao/v1/{entity}
  * PUT    /dao/v1/{entity}/{id}
  * DELETE /dao/v1/{entity}/{id}
@@ -45,10 +48,13 @@ public class EntityService extends BaseWebService {
     private static Logger LOGGER = Logger.getLogger(EntityService.class.getName());
 
     static final String REQ_LIST_REGEX = "list[?]size=\\d+";
+    static final String REQ_ESTIMATE_REGEX = "count[?]estimate=(true|false)";
 
     private Level level = Level.FINE;
     private String entities = null;
     private String pattern = null;
+    private long cacheSize = 0L;
+    private long cacheTtl = 0L;
 
     private transient Patterns patterns;
     //private transient Hashtable<String, Class<?>> entities;
@@ -69,6 +75,22 @@ public class EntityService extends BaseWebService {
         }
     }
 
+    /**
+     * Enables the entity cache of the entity types, 0 to disable.
+     *
+     * @param size The maximum number of entities by entity type
+     */
+    public void setCacheSize(long size) {
+        cacheSize = size;
+    }
+
+    /**
+     * @param ttl The time to live of the cached entities in milliseconds, 0 for no expiry
+     */
+    public void setCacheTtl(long ttl) {
+        cacheTtl = ttl;
+    }
+
     @Override
     protected void execute(HTTP_METHOD method, HttpExchange he) throws IOException {
 
@@ -160,6 +182,9 @@ public class EntityService extends BaseWebService {
         if (keyType == null || entityType == null) {
             throw new RuntimeException("Not setting handler entity properties.");
         }
+        if (cacheSize > 0L && !EntityCache.isEnabled(entityType)) {
+            EntityCache.enable(entityType, cacheSize, cacheTtl);
+        }
         return Dao.getDao((EntityManager)em, keyType, entityType);
     }
 
@@ -178,6 +203,16 @@ public class EntityService extends BaseWebService {
             //Return entity count
             response = String.format("{\"count\":\"%d\"}", baseDao.count());
         } else
+        if (Pattern.matches(REQ_ESTIMATE_REGEX, param)) {
+            //Return entity count estimated from the table statistics
+            final boolean estimate = Boolean.parseBoolean(param.substring(param.indexOf("=")+1));
+            response = String.format("{\"count\":\"%d\"}", estimate ? baseDao.estimateCount() : baseDao.count());
+        } else
+        if ("cache".equals(param)) {
+            //Return entity cache hit and miss counts
+            response = String.format("{\"hits\":\"%d\",\"misses\":\"%d\"}",
+                    EntityCache.getHits(entityType), EntityCache.getMisses(entityType));
+        } else
         if (Pattern.matches(REQ_LIST_REGEX, param)) {
             //Return entity list
             final int pos = param.indexOf("=");
@@ -186,7 +221,10 @@ public class EntityService extends BaseWebService {
                 he.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
                 return;
             }
-            final List<T> list = baseDao.finds().limit(limit).collect(Collectors.toList());
+            final List<T> list;
+            try (Stream<T> entities = baseDao.finds()) {
+                list = entities.limit(limit).collect(Collectors.toList());
+            }
             if (list.isEmpty()) {
                 he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
                 return;
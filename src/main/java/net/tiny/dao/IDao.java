@@ -7,6 +7,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
@@ -88,6 +89,70 @@ public interface IDao<T, ID extends Serializable> extends Constants {
      */
     void setBatchSize(int size);
 
+    /**
+     * 游标取得件数
+     *
+     * @return 一次从数据库取得的件数
+     */
+    int getFetchSize();
+
+    /**
+     * 设置游标取得件数
+     * findAll, find, findNamed, finds按游标逐次取得，读取下次件数时分离已读取的实体对象
+     *
+     * @param size
+     *            一次从数据库取得的件数
+     */
+    void setFetchSize(int size);
+
+    /**
+     * ID分块件数
+     *
+     * @return 一个IN条件的ID数
+     */
+    int getChunkSize();
+
+    /**
+     * 设置ID分块件数
+     * findList(ids)按分块查询，不超过数据库的参数上限
+     *
+     * @param size
+     *            一个IN条件的ID数
+     */
+    void setChunkSize(int size);
+
+    /**
+     * 总记录数缓存有效时间
+     *
+     * @return 有效时间(毫秒)，0为不缓存
+     */
+    long getCountCacheTtl();
+
+    /**
+     * 设置总记录数缓存有效时间
+     * 分页总记录数按实体类型和筛选缓存，经过DAO更新该实体类型时清除
+     *
+     * @param ttl
+     *            有效时间(毫秒)，0为不缓存
+     */
+    void setCountCacheTtl(long ttl);
+
+    /**
+     * 查询结果缓存有效时间
+     *
+     * @return 有效时间(毫秒)，0为不缓存
+     */
+    long getResultCacheTtl();
+
+    /**
+     * 设置查询结果缓存有效时间
+     * findList, findPage的结果ID和总记录数按实体类型和筛选、排序、分页缓存，经过DAO更新该实体类型时清除
+     *
+     * @param ttl
+     *            有效时间(毫秒)，0为不缓存
+     */
+    void setResultCacheTtl(long ttl);
+
     /**
      * 刷新实体对象
      *
@@ -185,6 +250,17 @@ public interface IDao<T, ID extends Serializable> extends Constants {
     Collection<T> save(Collection<T> entities);
     int save(Iterator<T> entities);
 
+    /**
+     * 批量插入实体对象
+     * 不经过持久化上下文，以JDBC批处理插入，插入后实体对象不为托管状态
+     * 首个实体对象已有主键时，插入全部实体对象的主键，不生成主键
+     *
+     * @param entities
+     *            实体对象
+     * @return 插入结果(键值，件数，每秒件数)
+     */
+    BulkResult<ID> insertAll(Iterator<T> entities);
+
     /**
      * 查找实体对象
      *
@@ -255,6 +331,28 @@ public interface IDao<T, ID extends Serializable> extends Constants {
      */
     List<T> findList(Collection<ID> ids, List<Filter> filters, List<Order> orders);
 
+    /**
+     * 按ID查找实体对象集合
+     * 按ID的顺序返回，跳过不存在的ID，已在持久化上下文中的实体对象不查询
+     *
+     * @param ids
+     *            ID集合
+     * @return 实体对象集合
+     */
+    List<T> findList(Collection<ID> ids);
+
+    /**
+     * 按ID并行查找实体对象集合
+     * 各分块在不同的EntityManager上查询，查询的实体对象为分离状态
+     *
+     * @param ids
+     *            ID集合
+     * @param parallelism
+     *            并行数
+     * @return 实体对象集合
+     */
+    List<T> findList(Collection<ID> ids, int parallelism);
+
     /**
      * 查找实体对象分页
      *
@@ -264,6 +362,70 @@ public interface IDao<T, ID extends Serializable> extends Constants {
      */
     Page<T> findPage(Pageable pageable);
 
+    /**
+     * 查找属性投影集合
+     * 只查询指定的属性，结果不进入持久化上下文
+     *
+     * @param properties
+     *            属性(关联除外)
+     * @param first
+     *            起始记录
+     * @param count
+     *            数量
+     * @param filters
+     *            筛选
+     * @param orders
+     *            排序
+     * @return 属性值数组集合
+     */
+    List<Object[]> findProjection(List<String> properties, Integer first, Integer count, List<Filter> filters, List<Order> orders);
+
+    /**
+     * 查找属性投影集合
+     * 以属性顺序的参数的构造函数生成结果
+     *
+     * @param type
+     *            结果类型
+     * @param properties
+     *            属性(关联除外)
+     * @param first
+     *            起始记录
+     * @param count
+     *            数量
+     * @param filters
+     *            筛选
+     * @param orders
+     *            排序
+     * @return 结果集合
+     */
+    <R> List<R> findProjection(Class<R> type, List<String> properties, Integer first, Integer count, List<Filter> filters, List<Order> orders);
+
+    /**
+     * 查找属性投影分页
+     * 按页码分页，不适用键集分页
+     *
+     * @param properties
+     *            属性(关联除外)
+     * @param pageable
+     *            分页信息
+     * @return 属性值数组分页
+     */
+    Page<Object[]> findProjectionPage(List<String> properties, Pageable pageable);
+
+    /**
+     * 查找属性投影分页
+     * 以属性顺序的参数的构造函数生成结果，按页码分页，不适用键集分页
+     *
+     * @param type
+     *            结果类型
+     * @param properties
+     *            属性(关联除外)
+     * @param pageable
+     *            分页信息
+     * @return 结果分页
+     */
+    <R> Page<R> findProjectionPage(Class<R> type, List<String> properties, Pageable pageable);
+
     /**
      * 查询实体对象存在
      *
@@ -303,6 +465,16 @@ public interface IDao<T, ID extends Serializable> extends Constants {
      */
     long count(Filter... filters);
 
+    /**
+     * 查询分页的实体对象数量
+     * 按分页信息的搜索和筛选计数，与findPage的总记录数相同
+     *
+     * @param pageable
+     *            分页信息
+     * @return 实体对象数量
+     */
+    long count(Pageable pageable);
+
     /**
      * 查询实体对象数量
      *
@@ -343,6 +515,14 @@ public interface IDao<T, ID extends Serializable> extends Constants {
      */
     long count();
 
+    /**
+     * 查询实体对象全体估算数量
+     * 读取数据库统计信息(H2, PostgreSQL, MySQL)，无统计信息时查询全体数量
+     *
+     * @return 实体对象估算数量
+     */
+    long estimateCount();
+
     /**
      * 删除实体对象
      *
@@ -379,11 +559,63 @@ public interface IDao<T, ID extends Serializable> extends Constants {
     int remove(List<T> entities);
     int removeAll();
 
-    Iterator<T> findAll();
-    Iterator<T> find(final Map<String, Object> where, final Map<String, Object> order);
-    Iterator<T> find(final Map<String, Object> where, final Map<String, Object> order, int offset, int max);
+    /**
+     * 以游标读取全体实体对象
+     * 游标读取到最后时关闭，中途停止时以try-with-resources关闭
+     *
+     * @return 实体对象游标
+     */
+    ResultCursor<T> findAll();
+    ResultCursor<T> find(final Map<String, Object> where, final Map<String, Object> order);
+    ResultCursor<T> find(final Map<String, Object> where, final Map<String, Object> order, int offset, int max);
 
     Stream<T> finds();
+
+    /**
+     * 全体实体对象的发布者
+     * 订阅后按请求数以游标读取，结束或取消时关闭游标和EntityManager
+     *
+     * @return 实体对象发布者
+     */
+    ResultPublisher<T> publish();
+
+    /**
+     * 实体对象的发布者
+     * 订阅后按请求数以游标读取，结束或取消时关闭游标和EntityManager
+     *
+     * @param where
+     *            查询条件
+     * @param order
+     *            排序
+     * @return 实体对象发布者
+     */
+    ResultPublisher<T> publish(final Map<String, Object> where, final Map<String, Object> order);
+
+    /**
+     * 分区并行扫描全表
+     * 按ID分区，各分区在自己的线程和EntityManager上以游标读取，实体对象为只读
+     *
+     * @param mode
+     *            分区方式
+     * @param partitions
+     *            分区数(线程数)
+     * @param consumer
+     *            线程安全的实体对象处理
+     * @return 实体对象数
+     */
+    long scan(PartitionScan.Mode mode, int partitions, Consumer<? super T> consumer);
+
+    /**
+     * 分区并行流
+     * 流的各分割为分区，各分区在自己的EntityManager上以游标读取，使用后关闭流
+     *
+     * @param mode
+     *            分区方式
+     * @param partitions
+     *            分区数
+     * @return 实体对象并行流
+     */
+    Stream<T> scans(PartitionScan.Mode mode, int partitions);
     List<T> selectAll() ;
     List<T> select(final Map<String, Object> whereParams, final Map<String, Object> orderParams);
     List<T> select(final Map<String, Object> whereParams, final Map<String, Object> orderParams, int offset, int max);
@@ -393,8 +625,8 @@ public interface IDao<T, ID extends Serializable> extends Constants {
     List<T> queryNamed(String name);
     List<T> queryNamed(String name, final Map<String, Object> where);
     List<T> queryNamed(String name, final Map<String, Object> where, int offset, int max);
-    Iterator<T> findNamed(String name, final Map<String, Object> where);
-    Iterator<T> findNamed(String name, final Map<String, Object> where, int offset, int max);
+    ResultCursor<T> findNamed(String name, final Map<String, Object> where);
+    ResultCursor<T> findNamed(String name, final Map<String, Object> where, int offset, int max);
 
     int updateNamed(String name, final Map<String, Object> args);
     Optional<T> updateNamed(String name, ID id);
@@ -0,0 +1,149 @@
+package net.tiny.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cursor of a keyset page: the order by values of the last row of the page.
+ * <p>
+ * A cursor is the URL safe Base64 of the page orders followed by the values as text,
+ * so a client can hand it back as a query parameter. The values are parsed back by
+ * the Java types of their attributes, a cursor of other orders is rejected. A null
+ * value is kept as null, the nulls of a keyset order sort before the other values.
+ */
+final class Keyset {
+
+    private Keyset() {}
+
+    static String encode(List<Order> orders, Object[] values) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(signature(orders));
+            for (int i = 0; i < values.length; i++) {
+                out.writeBoolean(null != values[i]);
+                if (null != values[i]) {
+                    out.writeUTF(format(values[i]));
+                }
+            }
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    static Object[] decode(String cursor, List<Order> orders, Class<?>[] types) {
+        final String signature;
+        final Object[] values = new Object[types.length];
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            signature = in.readUTF();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readBoolean() ? parse(in.readUTF(), types[i]) : null;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'", e);
+        }
+        if (!signature(orders).equals(signature)) {
+            throw new IllegalArgumentException("The cursor does not match the page orders");
+        }
+        return values;
+    }
+
+    private static String signature(List<Order> orders) {
+        StringBuilder sb = new StringBuilder();
+        for (Order order : orders) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(order.getProperty()).append(' ').append(order.getDirection());
+        }
+        return sb.toString();
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Enum) {
+            return ((Enum<?>)value).name();
+        } else if (value instanceof Timestamp || value instanceof java.sql.Date || value instanceof Time) {
+            return value.toString();
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date)value).getTime());
+        } else if (value instanceof Calendar) {
+            return String.valueOf(((Calendar)value).getTimeInMillis());
+        }
+        return value.toString();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object parse(String value, Class<?> type) {
+        if (String.class.equals(type)) {
+            return value;
+        } else if (Long.class.equals(type) || long.class.equals(type)) {
+            return Long.valueOf(value);
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            return Integer.valueOf(value);
+        } else if (Short.class.equals(type) || short.class.equals(type)) {
+            return Short.valueOf(value);
+        } else if (Byte.class.equals(type) || byte.class.equals(type)) {
+            return Byte.valueOf(value);
+        } else if (Double.class.equals(type) || double.class.equals(type)) {
+            return Double.valueOf(value);
+        } else if (Float.class.equals(type) || float.class.equals(type)) {
+            return Float.valueOf(value);
+        } else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            return Boolean.valueOf(value);
+        } else if (Character.class.equals(type) || char.class.equals(type)) {
+            return value.charAt(0);
+        } else if (BigDecimal.class.equals(type)) {
+            return new BigDecimal(value);
+        } else if (BigInteger.class.equals(type)) {
+            return new BigInteger(value);
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>)type, value);
+        } else if (LocalDateTime.class.equals(type)) {
+            return LocalDateTime.parse(value);
+        } else if (LocalDate.class.equals(type)) {
+            return LocalDate.parse(value);
+        } else if (LocalTime.class.equals(type)) {
+            return LocalTime.parse(value);
+        } else if (OffsetDateTime.class.equals(type)) {
+            return OffsetDateTime.parse(value);
+        } else if (ZonedDateTime.class.equals(type)) {
+            return ZonedDateTime.parse(value);
+        } else if (Instant.class.equals(type)) {
+            return Instant.parse(value);
+        } else if (Timestamp.class.equals(type)) {
+            return Timestamp.valueOf(value);
+        } else if (java.sql.Date.class.equals(type)) {
+            return java.sql.Date.valueOf(value);
+        } else if (Time.class.equals(type)) {
+            return Time.valueOf(value);
+        } else if (Date.class.equals(type)) {
+            return new Date(Long.parseLong(value));
+        } else if (Calendar.class.equals(type)) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(Long.parseLong(value));
+            return calendar;
+        } else if (UUID.class.equals(type)) {
+            return UUID.fromString(value);
+        }
+        throw new IllegalArgumentException("Unsupported keyset order type " + type.getName());
+    }
+}
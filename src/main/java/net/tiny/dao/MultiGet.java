@@ -0,0 +1,171 @@
+package net.tiny.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * Reads the entities of many IDs by chunks of IN queries.
+ * <p>
+ * The entities already in the persistence context are taken without a query (on EclipseLink),
+ * the other IDs are split in chunks so an IN list stays under the database parameter limits.
+ * A chunk is padded to a power of two by repeating its last ID, so the chunks share a few
+ * statements. The chunks can run in parallel, each on its own entity manager, the entities
+ * read there are detached. The entities are returned in the order of the IDs, the IDs not
+ * found are skipped.
+ */
+final class MultiGet {
+
+    private MultiGet() {}
+
+    static <T> List<T> find(EntityManager em, Class<T> entityClass, Collection<?> ids, int chunkSize, int parallelism) {
+        final Map<Object, T> found = new HashMap<>();
+        final List<Object> missing = new ArrayList<>();
+        final boolean eclipseLink = em.getClass().getName().startsWith("org.eclipse.persistence.");
+        for (Object id : new LinkedHashSet<Object>(ids)) {
+            if (null == id) {
+                continue;
+            }
+            Object managed = eclipseLink ? EclipseLink.find(em, entityClass, id) : null;
+            if (null == managed) {
+                missing.add(id);
+            } else if (em.contains(managed)) {
+                found.put(id, entityClass.cast(managed));
+            }
+        }
+        if (!missing.isEmpty()) {
+            final EntityType<T> entityType = em.getMetamodel().entity(entityClass);
+            if (!entityType.hasSingleIdAttribute()) {
+                // Composite keys are read one by one
+                for (Object id : missing) {
+                    T entity = em.find(entityClass, id);
+                    if (null != entity) {
+                        found.put(id, entity);
+                    }
+                }
+            } else {
+                final String jpql = String.format("SELECT e FROM %s e WHERE e.%s IN :ids",
+                        entityType.getName(), idAttribute(entityType).getName());
+                final List<List<Object>> chunks = chunks(missing, Math.max(1, chunkSize));
+                if (parallelism > 1 && chunks.size() > 1) {
+                    found.putAll(findParallel(em.getEntityManagerFactory(), entityClass, jpql, chunks, parallelism));
+                } else {
+                    for (List<Object> chunk : chunks) {
+                        for (Map.Entry<Object, T> entry : find(em, entityClass, jpql, chunk).entrySet()) {
+                            // Removed but not yet flushed
+                            if (em.contains(entry.getValue())) {
+                                found.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        final List<T> entities = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T entity = (null == id) ? null : found.get(id);
+            if (null != entity) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    private static <T> Map<Object, T> findParallel(EntityManagerFactory emf, Class<T> entityClass, String jpql,
+            List<List<Object>> chunks, int parallelism) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()),
+                new ParallelSeparatedIterator.ParserThreadFactory("dao-get"));
+        try {
+            final List<Future<Map<Object, T>>> futures = new ArrayList<>();
+            for (List<Object> chunk : chunks) {
+                futures.add(executor.submit(() -> {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        return find(em, entityClass, jpql, chunk);
+                    } finally {
+                        em.close();
+                    }
+                }));
+            }
+            final Map<Object, T> found = new HashMap<>();
+            for (Future<Map<Object, T>> future : futures) {
+                found.putAll(future.get());
+            }
+            return found;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PersistenceException) {
+                throw (PersistenceException) cause;
+            }
+            throw new PersistenceException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> Map<Object, T> find(EntityManager em, Class<T> entityClass, String jpql, List<Object> chunk) {
+        final PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        final Map<Object, T> found = new HashMap<>();
+        for (T entity : em.createQuery(jpql, entityClass)
+                .setParameter("ids", chunk)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList()) {
+            found.put(util.getIdentifier(entity), entity);
+        }
+        return found;
+    }
+
+    static List<List<Object>> chunks(List<Object> ids, int chunkSize) {
+        final List<List<Object>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            final List<Object> chunk = new ArrayList<>(ids.subList(i, Math.min(i + chunkSize, ids.size())));
+            final int padded = Math.min(Integer.highestOneBit(chunk.size() - 1) << 1, chunkSize);
+            final Object last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static SingularAttribute<?, ?> idAttribute(EntityType<?> entityType) {
+        for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes()) {
+            if (attribute.isId()) {
+                return attribute;
+            }
+        }
+        throw new IllegalArgumentException("No id attribute of " + entityType.getName());
+    }
+
+    /**
+     * Loaded only on EclipseLink.
+     */
+    static final class EclipseLink {
+        // The unit of work identity map is the persistence context, the shared cache is not read
+        static Object find(EntityManager em, Class<?> entityClass, Object id) {
+            final org.eclipse.persistence.internal.sessions.UnitOfWorkImpl uow =
+                    em.unwrap(org.eclipse.persistence.internal.sessions.UnitOfWorkImpl.class);
+            return uow.getIdentityMapAccessorInstance().getIdentityMapManager()
+                    .getFromIdentityMap(id, entityClass, false, uow.getDescriptor(entityClass));
+        }
+    }
+}
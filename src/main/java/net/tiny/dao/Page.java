@@ -1,8 +1,11 @@
 package net.tiny.dao;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 /**
  * 分页
@@ -16,17 +19,24 @@ public class Page<T> implements Serializable {
 	private final List<T> content = new ArrayList<T>();
 
 	/** 总记录数 */
-	private final long total;
+	private long total;
+
+	/** 延迟总记录数 */
+	private transient LongSupplier counter;
 
 	/** 分页信息 */
 	private final Pageable pageable;
 
+	/** 下页游标 */
+	private final String cursor;
+
 	/**
 	 * 初始化一个新创建的Page对象
 	 */
 	public Page() {
 		this.total = 0L;
 		this.pageable = new Pageable();
+		this.cursor = null;
 	}
 
 	/**
@@ -38,9 +48,39 @@ public class Page<T> implements Serializable {
 	 *            分页信息
 	 */
 	public Page(List<T> content, long total, Pageable pageable) {
+		this(content, total, pageable, null);
+	}
+
+	/**
+	 * @param content
+	 *            内容
+	 * @param total
+	 *            总记录数
+	 * @param pageable
+	 *            分页信息
+	 * @param cursor
+	 *            下页游标
+	 */
+	public Page(List<T> content, long total, Pageable pageable, String cursor) {
 		this.content.addAll(content);
 		this.total = total;
 		this.pageable = pageable;
+		this.cursor = cursor;
+	}
+
+	/**
+	 * @param content
+	 *            内容
+	 * @param counter
+	 *            总记录数查询，首次调用getTotal()时执行
+	 * @param pageable
+	 *            分页信息
+	 * @param cursor
+	 *            下页游标
+	 */
+	public Page(List<T> content, LongSupplier counter, Pageable pageable, String cursor) {
+		this(content, -1L, pageable, cursor);
+		this.counter = counter;
 	}
 
 	/**
@@ -139,9 +179,23 @@ public class Page<T> implements Serializable {
 	 * @return 总记录数
 	 */
 	public long getTotal() {
+		if (counter != null) {
+			total = counter.getAsLong();
+			counter = null;
+		}
 		return total;
 	}
 
+	/**
+	 * 获取下页游标
+	 * 键集分页时为最后记录的排序值，无下页时为null
+	 *
+	 * @return 下页游标
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
 	/**
 	 * 获取分页信息
 	 *
@@ -183,6 +237,11 @@ public class Page<T> implements Serializable {
 		return segment;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getTotal();
+		out.defaultWriteObject();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
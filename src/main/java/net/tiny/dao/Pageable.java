@@ -45,6 +45,18 @@ public class Pageable implements Serializable {
 	/** 排序 */
 	private List<Order> orders = new ArrayList<Order>();
 
+	/** 键集分页 */
+	private boolean keyset = false;
+
+	/** 游标 */
+	private String cursor;
+
+	/** 延迟总记录数 */
+	private boolean lazyTotal = false;
+
+	/** 估算总记录数 */
+	private boolean estimatedTotal = false;
+
 	/**
 	 * 初始化一个新创建的Pageable对象
 	 */
@@ -225,6 +237,85 @@ public class Pageable implements Serializable {
 	public void setOrders(List<Order> orders) {
 		this.orders = orders;
 	}
+
+	/**
+	 * 判断是否为键集分页
+	 * 以上页最后记录的排序值取得下页，不跳过前页记录
+	 *
+	 * @return 是否为键集分页
+	 */
+	public boolean isKeyset() {
+		return keyset || cursor != null;
+	}
+
+	/**
+	 * 设置键集分页
+	 *
+	 * @param keyset
+	 *            是否为键集分页
+	 */
+	public void setKeyset(boolean keyset) {
+		this.keyset = keyset;
+	}
+
+	/**
+	 * 获取游标
+	 *
+	 * @return 游标
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * 设置游标(上页的Page.getCursor())
+	 *
+	 * @param cursor
+	 *            游标
+	 */
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * 判断是否延迟总记录数
+	 * 调用Page.getTotal()时才查询总记录数，页码不按总页数修正
+	 *
+	 * @return 是否延迟总记录数
+	 */
+	public boolean isLazyTotal() {
+		return lazyTotal;
+	}
+
+	/**
+	 * 设置延迟总记录数
+	 *
+	 * @param lazyTotal
+	 *            是否延迟总记录数
+	 */
+	public void setLazyTotal(boolean lazyTotal) {
+		this.lazyTotal = lazyTotal;
+	}
+
+	/**
+	 * 判断是否估算总记录数
+	 * 无筛选和搜索时按数据库统计信息估算总记录数
+	 *
+	 * @return 是否估算总记录数
+	 */
+	public boolean isEstimatedTotal() {
+		return estimatedTotal;
+	}
+
+	/**
+	 * 设置估算总记录数
+	 *
+	 * @param estimatedTotal
+	 *            是否估算总记录数
+	 */
+	public void setEstimatedTotal(boolean estimatedTotal) {
+		this.estimatedTotal = estimatedTotal;
+	}
 /*
 	@Override
 	public boolean equals(Object obj) {
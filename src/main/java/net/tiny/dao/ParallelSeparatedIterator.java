@@ -0,0 +1,374 @@
+package net.tiny.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+/**
+ * Parse a large CSV/TSV file into entities on several cores.
+ *
+ * The file is memory-mapped by {@link FileChannel#map} and cut into chunks at record
+ * boundaries. The cut points are found by one quote-aware byte scan, so quoted line
+ * breaks never split a record. Every chunk is tokenized and converted to entities by
+ * its own task, the results are returned in file order or in completion order.
+ *
+ * Only ASCII compatible charsets (UTF-8, ISO-8859-1, US-ASCII) are supported, the
+ * delimiter, quote and line break bytes never appear inside their multi-byte sequences.
+ */
+public class ParallelSeparatedIterator<E> implements Iterator<E>, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelSeparatedIterator.class.getName());
+
+    private static final int MAX_ERROR_SIZE = 1000;
+    static final long MIN_CHUNK_SIZE = 1024L * 1024L;
+    static final long MAX_CHUNK_SIZE = 64L * 1024L * 1024L;
+    /** Window size of the boundary scan */
+    private static final long MAX_WINDOW_SIZE = 256L * 1024L * 1024L;
+
+    private final FileChannel channel;
+    private final Class<E> entityType;
+    private final char delimiter;
+    private final Charset charset;
+    private final Parsers parsers;
+    private final Map<String, Set<ConstraintViolation<?>>> errors;
+    private final Validator validator;
+    private final long[] bounds;
+    private final boolean ordered;
+    private final int window;
+    private final ExecutorService executor;
+    private final Deque<Future<List<E>>> pending = new ArrayDeque<>();
+    private final CompletionService<List<E>> completion;
+    private int running = 0;
+    private int nextChunk = 0;
+    private Iterator<E> current = Collections.emptyIterator();
+    private boolean closed = false;
+
+    private ParallelSeparatedIterator(Class<E> type, FileChannel channel, long[] bounds, char delimiter, Charset charset,
+            Parsers parsers, Map<String, Set<ConstraintViolation<?>>> errors, int parallelism, boolean ordered) {
+        this.entityType = type;
+        this.channel = channel;
+        this.bounds = bounds;
+        this.delimiter = delimiter;
+        this.charset = charset;
+        this.parsers = parsers;
+        this.errors = (null != errors) ? Collections.synchronizedMap(errors) : null;
+        this.validator = (null != errors) ? Validation.buildDefaultValidatorFactory().getValidator() : null;
+        this.ordered = ordered;
+        // Keep a few chunks ahead of the consumer, but do not parse the whole file into memory
+        this.window = parallelism * 2;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ParserThreadFactory());
+        this.completion = ordered ? null : new ExecutorCompletionService<>(executor);
+    }
+
+    /**
+     * @return Number of chunks the file is split into
+     */
+    public int getChunks() {
+        return bounds.length - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed) {
+                return false;
+            }
+            submit();
+            if (running == 0) {
+                close();
+                return false;
+            }
+            current = take().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    private void submit() {
+        while (running < window && nextChunk < bounds.length - 1) {
+            final long start = bounds[nextChunk];
+            final long end = bounds[nextChunk + 1];
+            nextChunk++;
+            if (ordered) {
+                pending.add(executor.submit(() -> parseChunk(start, end)));
+            } else {
+                completion.submit(() -> parseChunk(start, end));
+            }
+            running++;
+        }
+    }
+
+    private List<E> take() {
+        try {
+            final Future<List<E>> future = ordered ? pending.poll() : completion.take();
+            running--;
+            return future.get();
+        } catch (InterruptedException ex) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing chunks.", ex);
+        } catch (ExecutionException ex) {
+            close();
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    private List<E> parseChunk(long start, long end) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        final EntityParser parser = parsers.create();
+        final SeparatedTokenizer tokenizer =
+                new SeparatedTokenizer(new InputStreamReader(new ByteBufferInputStream(buffer), charset), delimiter)
+                    .raw(null != errors);
+        final List<E> list = new ArrayList<>();
+        while (tokenizer.next()) {
+            final String[] values = tokenizer.toArray();
+            try {
+                list.add(parser.parse(entityType, values, validator));
+            } catch (ConstraintViolationException ex) {
+                if (errors != null) {
+                    errors.put(tokenizer.line(), ex.getConstraintViolations());
+                    if (errors.size() >= MAX_ERROR_SIZE) {
+                        throw new RuntimeException("Too many errors(>1000).");
+                    }
+                }
+            } catch (RuntimeException ex) {
+                String msg = String.format("Parser error '%1$s' on %2$d line of chunk(%3$d) : '%4$s'",
+                        ex.getMessage(), tokenizer.getRow(), start, tokenizer.line());
+                LOGGER.log(Level.SEVERE, msg, ex);
+                throw ex;
+            } catch (Exception ex) {
+                String msg = String.format("Unexpected error '%1$s' on %2$d line of chunk(%3$d) : '%4$s'",
+                        ex.getMessage(), tokenizer.getRow(), start, tokenizer.line());
+                LOGGER.log(Level.SEVERE, msg, ex);
+                throw new RuntimeException(msg, ex);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = Collections.emptyIterator();
+        executor.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to close file channel!", ex);
+        }
+    }
+
+    public static <T> ParallelSeparatedIterator<T> parse(Path path, Class<T> classType, SeparatedValues.Type type,
+            int skips, Map<String, Set<ConstraintViolation<?>>> errors, int parallelism, boolean ordered) throws IOException {
+        return parse(path, StandardCharsets.UTF_8, classType, type, () -> new EntityParser(classType), skips, errors, parallelism, ordered);
+    }
+
+    public static <T> ParallelSeparatedIterator<T> parse(Path path, Class<T> classType, SeparatedValues.Type type, String[] names,
+            int skips, Map<String, Set<ConstraintViolation<?>>> errors, int parallelism, boolean ordered) throws IOException {
+        return parse(path, StandardCharsets.UTF_8, classType, type, () -> new EntityParser(classType, names, true), skips, errors, parallelism, ordered);
+    }
+
+    static <T> ParallelSeparatedIterator<T> parse(Path path, Charset charset, Class<T> classType, SeparatedValues.Type type, Parsers parsers,
+            int skips, Map<String, Set<ConstraintViolation<?>>> errors, int parallelism, boolean ordered) throws IOException {
+        if (!StandardCharsets.UTF_8.equals(charset)
+                && !StandardCharsets.ISO_8859_1.equals(charset)
+                && !StandardCharsets.US_ASCII.equals(charset)) {
+            throw new IllegalArgumentException(String.format("Not support charset '%s'", charset.name()));
+        }
+        if (parallelism < 1) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        final char delimiter = SeparatedValues.delimiter(type);
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            final long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L)));
+            final long[] bounds = boundaries(channel, skips, chunkSize, (byte) delimiter);
+            return new ParallelSeparatedIterator<T>(classType, channel, bounds, delimiter, charset, parsers, errors, parallelism, ordered);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Find the chunk bounds at record ends, the quote and escape state is tracked
+     * the same way as {@link SeparatedTokenizer}.
+     *
+     * @param channel File channel
+     * @param skips Skip line count of file head
+     * @param chunkSize Target chunk size
+     * @param delimiter Field delimiter
+     * @return Start offset of every chunk and the file size
+     * @throws IOException
+     */
+    static long[] boundaries(FileChannel channel, int skips, long chunkSize, byte delimiter) throws IOException {
+        final long size = channel.size();
+        final List<Long> list = new ArrayList<>();
+        long target = -1L;
+        boolean escaped  = false;
+        boolean inQuotes = false;
+        int lines = 0;
+        if (skips <= 0) {
+            list.add(0L);
+            target = chunkSize;
+        }
+        long pos = 0L;
+        while (pos < size) {
+            final int length = (int) Math.min(MAX_WINDOW_SIZE, size - pos);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            for (int i = 0; i < length; i++) {
+                final byte b = buffer.get(i);
+                if (lines < skips) {
+                    // Skip physical lines like BufferedReader#readLine
+                    if (b == '\n' || (b == '\r' && i + 1 < length && buffer.get(i + 1) != '\n')) {
+                        if (++lines == skips) {
+                            list.add(pos + i + 1);
+                            target = pos + i + 1 + chunkSize;
+                        }
+                    }
+                    continue;
+                }
+                if (b == '\n' || b == '\r') {
+                    escaped = false;
+                    if (inQuotes) {
+                        continue;
+                    }
+                    // Cut after LF or after a CR known not to be followed by LF
+                    if (b == '\r' && (i + 1 >= length || buffer.get(i + 1) == '\n')) {
+                        continue;
+                    }
+                    final long end = pos + i + 1;
+                    if (end >= target && end < size) {
+                        list.add(end);
+                        target = end + chunkSize;
+                    }
+                } else if (b == delimiter && !inQuotes) {
+                    continue;
+                } else if (b == '\\' && !escaped) {
+                    escaped = true;
+                } else if (b == SeparatedValues.VALUE_BOUNDARY && !escaped) {
+                    inQuotes = !inQuotes;
+                } else {
+                    escaped = false;
+                }
+            }
+            pos += length;
+        }
+        if (list.isEmpty()) {
+            // Less lines than skips
+            list.add(size);
+        }
+        list.add(size);
+        final long[] bounds = new long[list.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = list.get(i);
+            if (i > 0 && bounds[i] - bounds[i - 1] > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Too large record between %d and %d.", bounds[i - 1], bounds[i]));
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * EntityParser is not thread safe, every chunk task creates its own.
+     */
+    interface Parsers {
+        EntityParser create();
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    static class ParserThreadFactory implements java.util.concurrent.ThreadFactory {
+        private static final AtomicInteger POOL = new AtomicInteger();
+        private final AtomicInteger count = new AtomicInteger();
+        private final int pool = POOL.incrementAndGet();
+        private final String name;
+
+        ParserThreadFactory() {
+            this("csv-parser");
+        }
+
+        ParserThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, String.format("%s-%d-%d", name, pool, count.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
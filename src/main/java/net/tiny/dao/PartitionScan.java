@@ -0,0 +1,275 @@
+package net.tiny.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * Spliterator over the whole table of an entity, split in partitions of the ID.
+ * <p>
+ * The partitions are ranges of a numeric ID, or the buckets of MOD(ABS(id), n) when the IDs are
+ * not evenly spread. A split hands over the partitions not yet read, and each partition is
+ * read through its own {@link ResultCursor} on its own entity manager, so a parallel stream
+ * reads the table on as many connections as threads. The entities are read only, they are
+ * detached by the cursor and when the partition ends. Close the stream to release the
+ * partitions not read to the end.
+ */
+public final class PartitionScan<T> implements Spliterator<T>, AutoCloseable {
+
+    public enum Mode {
+        /** Ranges of the ID between its minimum and maximum */
+        RANGE,
+        /** MOD(ABS(id), n) buckets */
+        MODULO
+    }
+
+    private final EntityManagerFactory emf;
+    private final Class<T> entityClass;
+    private final int fetchSize;
+    private final List<Partition> partitions;
+    private final List<AutoCloseable> opened;
+    private ResultCursor<T> cursor;
+    private AutoCloseable current;
+
+    private PartitionScan(EntityManagerFactory emf, Class<T> entityClass, int fetchSize,
+            List<Partition> partitions, List<AutoCloseable> opened) {
+        this.emf = emf;
+        this.entityClass = entityClass;
+        this.fetchSize = fetchSize;
+        this.partitions = partitions;
+        this.opened = opened;
+    }
+
+    /**
+     * @param em The entity manager reading the bounds of the ID
+     * @param entityClass The entity
+     * @param mode The partitioning of the ID
+     * @param number The number of partitions
+     * @param fetchSize The fetch size of the partition cursors
+     */
+    static <T> PartitionScan<T> open(EntityManager em, Class<T> entityClass, Mode mode, int number, int fetchSize) {
+        final EntityType<T> entityType = em.getMetamodel().entity(entityClass);
+        final String select = "SELECT e FROM " + entityType.getName() + " e";
+        final List<Partition> partitions = new ArrayList<>();
+        final SingularAttribute<?, ?> id = entityType.hasSingleIdAttribute() ? idAttribute(entityType) : null;
+        final boolean numeric = null != id && (Number.class.isAssignableFrom(id.getJavaType())
+                || (id.getJavaType().isPrimitive() && id.getJavaType() != boolean.class && id.getJavaType() != char.class));
+        if (number <= 1 || !numeric) {
+            // One partition of the whole table
+            partitions.add(new Partition(select, null, null));
+        } else if (mode == Mode.MODULO) {
+            // The remainder of a negative ID is negative
+            for (int i = 0; i < number; i++) {
+                partitions.add(new Partition(String.format("%s WHERE MOD(ABS(e.%s), %d) = %d", select, id.getName(), number, i), null, null));
+            }
+        } else {
+            final Object[] bounds = em.createQuery(String.format("SELECT MIN(e.%1$s), MAX(e.%1$s) FROM %2$s e",
+                    id.getName(), entityType.getName()), Object[].class).getSingleResult();
+            if (null != bounds[0]) {
+                final long low = ((Number) bounds[0]).longValue();
+                final long high = ((Number) bounds[1]).longValue();
+                final int size = (int) Math.min(number, high - low + 1L);
+                final long step = (high - low) / size + 1L;
+                final String range = String.format("%1$s WHERE e.%2$s >= :from AND e.%2$s <= :to ORDER BY e.%2$s", select, id.getName());
+                for (int i = 0; i < size; i++) {
+                    long from = low + step * i;
+                    if (from > high) {
+                        break;
+                    }
+                    long to = (i == size - 1) ? high : Math.min(high, from + step - 1L);
+                    partitions.add(new Partition(range, cast(from, id.getJavaType()), cast(to, id.getJavaType())));
+                }
+            }
+        }
+        return new PartitionScan<T>(em.getEntityManagerFactory(), entityClass, fetchSize, partitions,
+                Collections.synchronizedList(new ArrayList<AutoCloseable>()));
+    }
+
+    /**
+     * @return The parallel stream of the entities, closing the partitions when it is closed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(this, true).onClose(this::close);
+    }
+
+    /**
+     * Reads every partition on its own thread.
+     *
+     * @param threads The maximum number of partitions read in parallel
+     * @param consumer The thread safe consumer of the entities
+     * @return The number of entities
+     */
+    public long forEach(int threads, Consumer<? super T> consumer) {
+        final List<PartitionScan<T>> scans = new ArrayList<>();
+        while (!partitions.isEmpty()) {
+            scans.add(new PartitionScan<T>(emf, entityClass, fetchSize,
+                    new ArrayList<Partition>(Collections.singletonList(partitions.remove(0))), opened));
+        }
+        if (scans.isEmpty()) {
+            return 0L;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, scans.size())),
+                new ParallelSeparatedIterator.ParserThreadFactory("dao-scan"));
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (PartitionScan<T> scan : scans) {
+                futures.add(executor.submit(() -> {
+                    long count = 0L;
+                    while (scan.tryAdvance(consumer)) {
+                        count++;
+                    }
+                    return count;
+                }));
+            }
+            long count = 0L;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new PersistenceException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+            close();
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (null == cursor || !cursor.hasNext()) {
+            if (null != current) {
+                // The connection of a partition is released at its end
+                opened.remove(current);
+                close(current);
+                current = null;
+                cursor = null;
+            }
+            if (partitions.isEmpty()) {
+                return false;
+            }
+            open(partitions.remove(0));
+        }
+        action.accept(cursor.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (partitions.size() < 2) {
+            return null;
+        }
+        final List<Partition> half = new ArrayList<>(partitions.subList(0, partitions.size() / 2));
+        partitions.subList(0, half.size()).clear();
+        return new PartitionScan<T>(emf, entityClass, fetchSize, half, opened);
+    }
+
+    @Override
+    public long estimateSize() {
+        return (null == current && partitions.isEmpty()) ? 0L : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.NONNULL;
+    }
+
+    @Override
+    public void close() {
+        synchronized (opened) {
+            for (AutoCloseable closeable : opened) {
+                close(closeable);
+            }
+            opened.clear();
+        }
+    }
+
+    private void open(Partition partition) {
+        final EntityManager em = emf.createEntityManager();
+        try {
+            final TypedQuery<T> query = em.createQuery(partition.jpql, entityClass);
+            if (null != partition.from) {
+                query.setParameter("from", partition.from).setParameter("to", partition.to);
+            }
+            final ResultCursor<T> opening = ResultCursor.open(em, query, fetchSize);
+            cursor = opening;
+            current = () -> {
+                // The cursor is closed before its entity manager
+                close(opening);
+                em.close();
+            };
+            opened.add(current);
+        } catch (RuntimeException e) {
+            em.close();
+            throw e;
+        }
+    }
+
+    private static void close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Closing the other partitions
+        }
+    }
+
+    private static Object cast(long value, Class<?> type) {
+        if (Integer.class.equals(type) || int.class.equals(type)) {
+            return (int) value;
+        } else if (Short.class.equals(type) || short.class.equals(type)) {
+            return (short) value;
+        } else if (Byte.class.equals(type) || byte.class.equals(type)) {
+            return (byte) value;
+        } else if (java.math.BigInteger.class.equals(type)) {
+            return java.math.BigInteger.valueOf(value);
+        } else if (java.math.BigDecimal.class.equals(type)) {
+            return java.math.BigDecimal.valueOf(value);
+        }
+        return value;
+    }
+
+    private static SingularAttribute<?, ?> idAttribute(EntityType<?> entityType) {
+        for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes()) {
+            if (attribute.isId()) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The query of a partition.
+     */
+    static final class Partition {
+        final String jpql;
+        final Object from;
+        final Object to;
+
+        Partition(String jpql, Object from, Object to) {
+            this.jpql = jpql;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package net.tiny.dao;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Query;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+
+/**
+ * JPQL of the filter and order queries, cached by the shape of the filters and orders.
+ * <p>
+ * The shape is the property, operator and case of every filter and the property and
+ * direction of every order, the filter values are bound as parameters. So the requests
+ * of a list page share one JPQL string, which is parsed once by the provider query cache
+ * and prepared once by the statement cache. The properties are checked against the
+ * metamodel before they are written in a JPQL string.
+ */
+final class QueryPlan {
+
+    // Least recently used plans are evicted
+    private static final int MAX_PLANS = 512;
+
+    private static final Map<String, QueryPlan> PLANS = Collections.synchronizedMap(
+            new LinkedHashMap<String, QueryPlan>(64, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+                    return size() > MAX_PLANS;
+                }
+            });
+
+    private final String select;
+    private final String count;
+    private final boolean filtered;
+
+    private QueryPlan(String select, String count, boolean filtered) {
+        this.select = select;
+        this.count = count;
+        this.filtered = filtered;
+    }
+
+    /**
+     * @param entityType The entity
+     * @param search The search property, or null
+     * @param filters The filters
+     * @param orders The orders
+     * @param defaultOrder The order when no order is given, or null
+     */
+    static QueryPlan get(EntityType<?> entityType, String search, List<Filter> filters, List<Order> orders, Order defaultOrder) {
+        final StringBuilder key = new StringBuilder(entityType.getJavaType().getName());
+        key.append('|').append(search).append('|');
+        if (null != filters) {
+            for (Filter filter : filters) {
+                String shape = shape(filter);
+                if (null != shape) {
+                    key.append(shape).append(',');
+                }
+            }
+        }
+        key.append('|');
+        if (null != orders) {
+            for (Order order : orders) {
+                if (null != order && null != order.getDirection()) {
+                    key.append(order.getProperty()).append(' ').append(order.getDirection()).append(',');
+                }
+            }
+        }
+        if (null != defaultOrder) {
+            key.append('|').append(defaultOrder.getProperty()).append(' ').append(defaultOrder.getDirection());
+        }
+        final String k = key.toString();
+        QueryPlan plan = PLANS.get(k);
+        if (null == plan) {
+            plan = build(entityType, search, filters, orders, defaultOrder);
+            PLANS.put(k, plan);
+        }
+        return plan;
+    }
+
+    static int size() {
+        return PLANS.size();
+    }
+
+    String getSelect() {
+        return select;
+    }
+
+    String getCount() {
+        return count;
+    }
+
+    /**
+     * The select of some properties, as arrays or by the constructor of a type.
+     * Associations are rejected, so no entity is read by a projection.
+     *
+     * @param entityType The entity
+     * @param properties The basic or embedded properties
+     * @param type The result type, Object[] for arrays
+     */
+    String getSelect(EntityType<?> entityType, List<String> properties, Class<?> type) {
+        final StringBuilder selection = new StringBuilder();
+        if (null != properties) {
+            for (String property : properties) {
+                Attribute<?, ?> attribute = entityType.getAttribute(property);
+                if (attribute.isAssociation() || attribute.isCollection()) {
+                    throw new IllegalArgumentException(String.format("Not a basic property '%s' of %s",
+                            property, entityType.getName()));
+                }
+                selection.append(selection.length() > 0 ? ", " : "").append("e.").append(attribute.getName());
+            }
+        }
+        if (selection.length() == 0) {
+            throw new IllegalArgumentException("No projection property of " + entityType.getName());
+        }
+        final String projection = Object[].class.equals(type) ? selection.toString()
+                : "NEW " + type.getName() + "(" + selection + ")";
+        return "SELECT " + projection + select.substring("SELECT e".length());
+    }
+
+    /**
+     * @return true if the query has a search or a filter
+     */
+    boolean isFiltered() {
+        return filtered;
+    }
+
+    /**
+     * Binds the search and the filter values of a request.
+     */
+    <Q extends Query> Q bind(Q query, String searchValue, List<Filter> filters) {
+        int index = 0;
+        if (null != searchValue) {
+            query.setParameter("p" + index++, "%" + searchValue + "%");
+        }
+        if (null != filters) {
+            for (Filter filter : filters) {
+                String shape = shape(filter);
+                if (null == shape) {
+                    continue;
+                }
+                switch (filter.getOperator()) {
+                case isNull:
+                case isNotNull:
+                    break;
+                case in:
+                    query.setParameter("p" + index++, values(filter.getValue()));
+                    break;
+                default:
+                    if (shape.endsWith(" lower")) {
+                        query.setParameter("p" + index++, ((String) filter.getValue()).toLowerCase());
+                    } else {
+                        query.setParameter("p" + index++, filter.getValue());
+                    }
+                    break;
+                }
+            }
+        }
+        return query;
+    }
+
+    private static QueryPlan build(EntityType<?> entityType, String search, List<Filter> filters, List<Order> orders, Order defaultOrder) {
+        final StringBuilder where = new StringBuilder();
+        int index = 0;
+        if (null != search) {
+            where.append(path(entityType, search)).append(" like :p").append(index++);
+        }
+        if (null != filters) {
+            for (Filter filter : filters) {
+                String shape = shape(filter);
+                if (null == shape) {
+                    continue;
+                }
+                if (where.length() > 0) {
+                    where.append(" and ");
+                }
+                String path = path(entityType, filter.getProperty());
+                if (shape.endsWith(" lower")) {
+                    path = "lower(" + path + ")";
+                }
+                where.append(path);
+                switch (filter.getOperator()) {
+                case eq:   where.append(" = :p");    break;
+                case ne:   where.append(" <> :p");   break;
+                case gt:   where.append(" > :p");    break;
+                case lt:   where.append(" < :p");    break;
+                case ge:   where.append(" >= :p");   break;
+                case le:   where.append(" <= :p");   break;
+                case like: where.append(" like :p"); break;
+                case in:   where.append(" in :p");   break;
+                case isNull:
+                    where.append(" is null");
+                    continue;
+                case isNotNull:
+                    where.append(" is not null");
+                    continue;
+                }
+                where.append(index++);
+            }
+        }
+        final StringBuilder orderBy = new StringBuilder();
+        if (null != orders) {
+            for (Order order : orders) {
+                if (null != order && null != order.getDirection()) {
+                    orderBy.append(orderBy.length() > 0 ? ", " : "")
+                        .append(path(entityType, order.getProperty())).append(' ').append(order.getDirection());
+                }
+            }
+        }
+        if (orderBy.length() == 0 && null != defaultOrder) {
+            orderBy.append(path(entityType, defaultOrder.getProperty())).append(' ').append(defaultOrder.getDirection());
+        }
+        final String from = " FROM " + entityType.getName() + " e" + (where.length() > 0 ? " WHERE " + where : "");
+        return new QueryPlan("SELECT e" + from + (orderBy.length() > 0 ? " ORDER BY " + orderBy : ""),
+                "SELECT COUNT(e)" + from, where.length() > 0);
+    }
+
+    /**
+     * The shape of a filter, or null if the filter is not applied.
+     * The same filters as the criteria restrictions of BaseDao are applied.
+     */
+    private static String shape(Filter filter) {
+        if (null == filter || null == filter.getProperty() || filter.getProperty().trim().isEmpty()
+                || null == filter.getOperator()) {
+            return null;
+        }
+        final Object value = filter.getValue();
+        switch (filter.getOperator()) {
+        case isNull:
+        case isNotNull:
+            return filter.getProperty() + " " + filter.getOperator();
+        case like:
+            if (!(value instanceof String)) {
+                return null;
+            }
+            break;
+        default:
+            if (null == value) {
+                return null;
+            }
+            break;
+        }
+        if ((filter.getOperator() == Filter.Operator.eq || filter.getOperator() == Filter.Operator.ne)
+                && Boolean.TRUE.equals(filter.getIgnoreCase()) && value instanceof String) {
+            return filter.getProperty() + " " + filter.getOperator() + " lower";
+        }
+        return filter.getProperty() + " " + filter.getOperator();
+    }
+
+    // Unknown properties are rejected as by Root.get
+    private static String path(EntityType<?> entityType, String property) {
+        return "e." + entityType.getAttribute(property).getName();
+    }
+
+    private static Collection<?> values(Object value) {
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        }
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        return Collections.singletonList(value);
+    }
+}
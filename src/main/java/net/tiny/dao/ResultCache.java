@@ -0,0 +1,138 @@
+package net.tiny.dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IDs and totals of the list and page queries by entity type and normalized query.
+ * <p>
+ * Only the IDs of the rows are kept, the entities of a hit are read by ID in the persistence
+ * context of the caller. So a hit skips the filtered, ordered and counted queries, and the
+ * cached results are never shared across entity managers. The least recently used results
+ * are evicted over the entry count or the approximate memory of the keys and IDs.
+ * <p>
+ * The results of an entity type are dropped when the type is written through a DAO and again
+ * when the DAO commits the write, a DAO with writes pending in its transaction neither reads
+ * nor keeps results. So the results read by the other entity managers before the commit are
+ * dropped, and a rolled back write leaves no result behind. A transaction committed without
+ * the DAO, by its entity manager or by a container, is only seen at the next read of the DAO,
+ * until then the other entity managers may read the results of before the commit. Writes that
+ * bypass the DAOs are only seen after the time to live.
+ */
+final class ResultCache {
+
+    private static final int MAX_ENTRIES = 10000;
+    // Approximate memory of the keys and IDs
+    private static final long MAX_BYTES = 16L * 1024L * 1024L;
+
+    private static final Map<Class<?>, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+    private static final LinkedHashMap<String, Entry> RESULTS = new LinkedHashMap<>(256, 0.75f, true);
+    private static long bytes = 0L;
+
+    private ResultCache() {}
+
+    static Entry get(Class<?> type, String key) {
+        final String k = type.getName() + '|' + key;
+        synchronized (RESULTS) {
+            final Entry entry = RESULTS.get(k);
+            if (null == entry) {
+                return null;
+            }
+            if (entry.expires < System.currentTimeMillis() || entry.generation != generation(type)) {
+                remove(k);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    static void put(Class<?> type, String key, long generation, List<?> ids, long total, int pageNumber, long ttl) {
+        final String k = type.getName() + '|' + key;
+        final Entry entry = new Entry(ids.toArray(), total, pageNumber, generation,
+                System.currentTimeMillis() + ttl, 64L + 2L * k.length() + 24L * ids.size());
+        if (entry.bytes > MAX_BYTES / 8) {
+            // Too large, would evict too many results
+            return;
+        }
+        synchronized (RESULTS) {
+            remove(k);
+            RESULTS.put(k, entry);
+            bytes += entry.bytes;
+            final Iterator<Entry> it = RESULTS.values().iterator();
+            while ((RESULTS.size() > MAX_ENTRIES || bytes > MAX_BYTES) && it.hasNext()) {
+                bytes -= it.next().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The generation of the results of a type, read before the query so a result is not
+     * kept when the type was written while it was read.
+     */
+    static long generation(Class<?> type) {
+        return counter(type).get();
+    }
+
+    static void invalidate(Class<?> type) {
+        final AtomicLong generation = GENERATIONS.get(type);
+        if (null != generation) {
+            generation.incrementAndGet();
+        }
+    }
+
+    static String key(Integer first, Integer count, List<Filter> filters, List<Order> orders) {
+        return String.format("list %s %s %s order %s", first, count, CountCache.key(null, null, filters), orders(orders));
+    }
+
+    static String key(Pageable pageable, List<Order> orders) {
+        return String.format("page %d %d %s order %s lazy %s estimated %s", pageable.getPageNumber(), pageable.getPageSize(),
+                CountCache.key(pageable), orders(orders), pageable.isLazyTotal(), pageable.isEstimatedTotal());
+    }
+
+    private static String orders(List<Order> orders) {
+        final StringBuilder sb = new StringBuilder();
+        if (null != orders) {
+            for (Order order : orders) {
+                if (null != order && null != order.getDirection()) {
+                    sb.append(order.getProperty()).append(' ').append(order.getDirection()).append(',');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static AtomicLong counter(Class<?> type) {
+        return GENERATIONS.computeIfAbsent(type, t -> new AtomicLong());
+    }
+
+    private static void remove(String key) {
+        final Entry entry = RESULTS.remove(key);
+        if (null != entry) {
+            bytes -= entry.bytes;
+        }
+    }
+
+    static final class Entry {
+        final Object[] ids;
+        final long total;
+        final int pageNumber;
+        final long generation;
+        final long expires;
+        final long bytes;
+
+        Entry(Object[] ids, long total, int pageNumber, long generation, long expires, long bytes) {
+            this.ids = ids;
+            this.total = total;
+            this.pageNumber = pageNumber;
+            this.generation = generation;
+            this.expires = expires;
+            this.bytes = bytes;
+        }
+    }
+}
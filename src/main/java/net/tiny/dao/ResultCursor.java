@@ -0,0 +1,155 @@
+package net.tiny.dao;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+
+/**
+ * Forward only cursor over the results of a query.
+ * <p>
+ * The rows are fetched from the JDBC result set by the fetch size, and the entities
+ * of a fetch are detached from the persistence context when the next fetch is read,
+ * so walking a whole table runs in constant memory. The entities are not put in the
+ * shared cache, and changes to them are not written after they are detached, merge
+ * them to save.
+ * <p>
+ * EclipseLink reads through a cursored stream ("eclipselink.cursor" hint), the other
+ * providers through {@link TypedQuery#getResultStream()}, which is a scrollable result
+ * on Hibernate. The cursor is closed at the end of the results, close it when the
+ * iteration stops before.
+ */
+public class ResultCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private final EntityManager entityManager;
+    private final Iterator<T> results;
+    private final AutoCloseable closer;
+    private final Runnable release;
+    private final List<T> fetched;
+    private final int fetchSize;
+    private boolean closed = false;
+
+    private ResultCursor(EntityManager em, Iterator<T> results, AutoCloseable closer, Runnable release, int fetchSize) {
+        this.entityManager = em;
+        this.results = results;
+        this.closer = closer;
+        this.release = release;
+        this.fetchSize = fetchSize;
+        this.fetched = new ArrayList<T>(Math.max(fetchSize, 0));
+    }
+
+    static <T> ResultCursor<T> open(EntityManager em, TypedQuery<T> query, int fetchSize) {
+        query.setFlushMode(FlushModeType.COMMIT);
+        // Walked entities are not put in the shared cache
+        query.setHint("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+        if (fetchSize > 0) {
+            query.setHint("eclipselink.jdbc.fetch-size", fetchSize);
+            query.setHint("org.hibernate.fetchSize", fetchSize);
+        }
+        if (query.getClass().getName().startsWith("org.eclipse.persistence.")) {
+            return EclipseLink.open(em, query, fetchSize);
+        }
+        final Stream<T> stream = query.getResultStream();
+        return new ResultCursor<T>(em, stream.iterator(), stream::close, null, fetchSize);
+    }
+
+    /**
+     * @return The stream of the results, closing this cursor when it is closed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (results.hasNext()) {
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (fetchSize > 0 && fetched.size() >= fetchSize) {
+            detach();
+        }
+        T entity = results.next();
+        if (fetchSize > 0) {
+            fetched.add(entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        fetched.clear();
+        try {
+            closer.close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void detach() {
+        if (entityManager.isOpen()) {
+            for (T entity : fetched) {
+                if (entityManager.contains(entity)) {
+                    entityManager.detach(entity);
+                }
+            }
+        }
+        fetched.clear();
+        if (null != release) {
+            release.run();
+        }
+    }
+
+    /**
+     * Loaded only on EclipseLink.
+     */
+    static final class EclipseLink {
+        @SuppressWarnings("unchecked")
+        static <T> ResultCursor<T> open(EntityManager em, TypedQuery<T> query, int fetchSize) {
+            query.setHint("eclipselink.cursor", Boolean.TRUE);
+            if (fetchSize > 0) {
+                query.setHint("eclipselink.cursor.page-size", fetchSize);
+            }
+            final org.eclipse.persistence.queries.CursoredStream cursor =
+                    (org.eclipse.persistence.queries.CursoredStream) query.getSingleResult();
+            final Iterator<T> results = new IteratorAdapter<Object, T>(cursor) {
+                @Override
+                protected T next(Object next) {
+                    // The post load events of a cursor are deferred to the end of the next query
+                    cursor.getSession().executeDeferredEvents();
+                    cursor.getExecutionSession().executeDeferredEvents();
+                    return (T) next;
+                }
+            };
+            // The cursored stream keeps the read objects until they are released
+            return new ResultCursor<T>(em, results, cursor::close, cursor::releasePrevious, fetchSize);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package net.tiny.dao;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+/**
+ * Publisher of the results of a query, read as they are requested.
+ * <p>
+ * The subscriber and subscription follow the reactive streams rules, with the methods of
+ * org.reactivestreams and java.util.concurrent.Flow, so an adapter to them is a few lines.
+ * Every subscription reads the query again on its own entity manager, opened at the first
+ * request. The rows are read through a {@link ResultCursor}, no more rows than requested are
+ * read past the fetch size, and the read entities are detached. The cursor and the entity
+ * manager are closed when the results end, fail or the subscription is cancelled.
+ * <p>
+ * The entities are delivered on the thread requesting them, or on the executor of the
+ * publisher, one signal at a time.
+ */
+public final class ResultPublisher<T> {
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+        void onNext(T item);
+        void onError(Throwable throwable);
+        void onComplete();
+    }
+
+    public interface Subscription {
+        void request(long n);
+        void cancel();
+    }
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Function<EntityManager, TypedQuery<T>> query;
+    private final int fetchSize;
+    private final Executor executor;
+
+    /**
+     * @param emf The entity manager factory of the subscriptions
+     * @param query The query on the entity manager of a subscription
+     * @param fetchSize The fetch size of the cursor
+     * @param executor The executor delivering the entities, or null for the requesting thread
+     */
+    ResultPublisher(EntityManagerFactory emf, Function<EntityManager, TypedQuery<T>> query, int fetchSize, Executor executor) {
+        this.entityManagerFactory = emf;
+        this.query = query;
+        this.fetchSize = fetchSize;
+        this.executor = executor;
+    }
+
+    /**
+     * @param executor The executor delivering the entities
+     * @return A publisher of the same query delivering on the executor
+     */
+    public ResultPublisher<T> on(Executor executor) {
+        return new ResultPublisher<T>(entityManagerFactory, query, fetchSize, executor);
+    }
+
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (null == subscriber) {
+            throw new NullPointerException("subscriber");
+        }
+        final ResultSubscription subscription = new ResultSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    final class ResultSubscription implements Subscription, Runnable {
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // Running and missed drains, only one thread reads the cursor
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable invalid;
+        private boolean done = false;
+        private EntityManager entityManager;
+        private ResultCursor<T> cursor;
+
+        ResultSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                invalid = new IllegalArgumentException("Non-positive request " + n);
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n;
+                    if (u < 0L) {
+                        u = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(r, u));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            if (null == executor) {
+                run();
+            } else {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                emit();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (done) {
+                return;
+            }
+            final long r = requested.get();
+            long emitted = 0L;
+            try {
+                while (emitted != r) {
+                    if (cancelled || null != invalid) {
+                        break;
+                    }
+                    if (null == cursor) {
+                        open();
+                    }
+                    if (!cursor.hasNext()) {
+                        release();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(cursor.next());
+                    emitted++;
+                }
+            } catch (RuntimeException e) {
+                if (done) {
+                    // Thrown by onComplete
+                    throw e;
+                }
+                release();
+                subscriber.onError(e);
+                return;
+            }
+            if (null != invalid) {
+                release();
+                subscriber.onError(invalid);
+            } else if (cancelled) {
+                release();
+            } else if (r != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        private void open() {
+            entityManager = entityManagerFactory.createEntityManager();
+            cursor = ResultCursor.open(entityManager, query.apply(entityManager), fetchSize);
+        }
+
+        private void release() {
+            done = true;
+            try {
+                if (null != cursor) {
+                    cursor.close();
+                }
+            } catch (RuntimeException e) {
+                // The results are ended
+            } finally {
+                if (null != entityManager) {
+                    entityManager.close();
+                }
+            }
+        }
+    }
+}
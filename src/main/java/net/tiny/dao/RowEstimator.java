@@ -0,0 +1,98 @@
+package net.tiny.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Dialect reading the estimated number of rows of a table from the database statistics.
+ * <p>
+ * The estimates are maintained by the database planner (ANALYZE, auto vacuum, ...), they are
+ * cheap to read but may lag behind the table. Register other dialects with
+ * {@link DaoHelper#addRowEstimator(RowEstimator)}.
+ */
+public interface RowEstimator {
+
+    /**
+     * @param product The database product name of the connection meta data
+     * @return true if this dialect reads the statistics of the database
+     */
+    boolean supports(String product);
+
+    /**
+     * @param conn The connection
+     * @param table The table name
+     * @return The estimated number of rows, or a negative number if the table has no statistics
+     * @throws SQLException
+     */
+    long estimate(Connection conn, String table) throws SQLException;
+
+    /**
+     * Reads the statistics through the entity manager, which needs no transaction to reach a
+     * connection. A dialect reading only through a connection counts the rows outside a transaction.
+     *
+     * @param em The entity manager
+     * @param table The table name
+     * @return The estimated number of rows, or a negative number if the table has no statistics
+     */
+    default long estimate(EntityManager em, String table) {
+        return -1L;
+    }
+
+    /** H2 INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE */
+    RowEstimator H2 = new Statistics("H2",
+            "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND UPPER(TABLE_NAME) = UPPER(?)");
+
+    /** PostgreSQL pg_class.reltuples, -1 until the table is analyzed */
+    RowEstimator POSTGRESQL = new Statistics("PostgreSQL",
+            "SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = to_regclass(?)");
+
+    /** MySQL and MariaDB information_schema.TABLES.TABLE_ROWS */
+    RowEstimator MYSQL = new Statistics("MySQL|MariaDB",
+            "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?");
+
+    /**
+     * Estimate by a statistics query of one table name parameter.
+     */
+    class Statistics implements RowEstimator {
+        private final String products;
+        private final String sql;
+
+        public Statistics(String products, String sql) {
+            this.products = products;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean supports(String product) {
+            return null != product && product.matches(products);
+        }
+
+        @Override
+        public long estimate(Connection conn, String table) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, table);
+                try (ResultSet res = ps.executeQuery()) {
+                    if (res.next()) {
+                        long rows = res.getLong(1);
+                        return res.wasNull() ? -1L : rows;
+                    }
+                }
+            }
+            return -1L;
+        }
+
+        @Override
+        public long estimate(EntityManager em, String table) {
+            final List<?> rows = em.createNativeQuery(sql).setParameter(1, table).getResultList();
+            if (rows.isEmpty() || !(rows.get(0) instanceof Number)) {
+                return -1L;
+            }
+            return ((Number) rows.get(0)).longValue();
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package net.tiny.dao;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -22,22 +22,19 @@ public class SeparatedIterator<E> implements Iterator<E> {
 
     private static final int MAX_ERROR_SIZE = 1000;
 
-    private final LineNumberReader reader;
-    private final char delimiter;
+    private final SeparatedTokenizer tokenizer;
     private final Class<E> entityType;
     private final Map<String, Set<ConstraintViolation<?>>> errors;
     private final EntityParser parser;
-    private int row = 0;
     private E last = null;
-    private String lastLine = null;
     private Validator validator = null;
     private boolean skip = true;
 
 
-    private SeparatedIterator(Class<E> type, LineNumberReader reader,  char delimiter, EntityParser parser, boolean validating, Map<String, Set<ConstraintViolation<?>>> errors) {
+    private SeparatedIterator(Class<E> type, Reader reader,  char delimiter, EntityParser parser, boolean validating, Map<String, Set<ConstraintViolation<?>>> errors) {
         this.entityType = type;
-        this.reader = reader;
-        this.delimiter = delimiter;
+        // Keep the raw record text as the key of validation errors
+        this.tokenizer = new SeparatedTokenizer(reader, delimiter).raw(null != errors);
         this.parser = parser;
         this.errors = errors;
         if(validating) {
@@ -52,7 +49,7 @@ public class SeparatedIterator<E> implements Iterator<E> {
             this.last = getLast();
             return (null != this.last);
         } catch (IOException ex) {
-            LOGGER.warning(String.format("Line %1$d : '%2$s' error cause:%3$s ", this.row, this.lastLine, ex.getMessage()));
+            LOGGER.warning(String.format("Line %1$d : '%2$s' error cause:%3$s ", tokenizer.getRow(), tokenizer.line(), ex.getMessage()));
             return false;
         }
     }
@@ -63,8 +60,8 @@ public class SeparatedIterator<E> implements Iterator<E> {
     }
 
     private E getLast() throws IOException {
-        while( null != (this.lastLine = getLastLine()) ) {
-            this.last = getLast(this.lastLine);
+        while(tokenizer.next()) {
+            this.last = getLast(tokenizer.toArray());
             if(this.last != null) {
                 return this.last;
             }
@@ -72,27 +69,12 @@ public class SeparatedIterator<E> implements Iterator<E> {
         return null;
     }
 
-    private String getLastLine() throws IOException {
-        String line;
-        String nextLine;
-        if( null != (line = reader.readLine()) ) {
-            row++;
-            while ( SeparatedValues.brokenLine(line, this.delimiter)
-                    && null != ( nextLine = reader.readLine() ) ) {
-                row++;
-                line = line.concat("\n").concat(nextLine);
-            }
-        }
-        return line;
-    }
-
-    private E getLast(String line) {
-        List<String> values = SeparatedValues.split(this.lastLine, this.delimiter);
+    private E getLast(String[] values) {
         try {
             return parser.parse(this.entityType, values, this.validator);
         } catch (ConstraintViolationException ex) {
             if(this.errors != null) {
-                this.errors.put(line, ex.getConstraintViolations());
+                this.errors.put(tokenizer.line(), ex.getConstraintViolations());
                 if(this.errors.size() >= MAX_ERROR_SIZE) {
                     throw new RuntimeException("Too many errors(>1000).");
                 }
@@ -100,16 +82,16 @@ public class SeparatedIterator<E> implements Iterator<E> {
             if(this.skip) {
                 return null;
             } else {
-                String msg = String.format("Vialidation error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), this.row, values.toString());
+                String msg = String.format("Vialidation error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), tokenizer.getRow(), Arrays.toString(values));
                 LOGGER.log(Level.SEVERE, msg, ex);
                 throw ex;
             }
         } catch (RuntimeException ex) {
-            String msg = String.format("Parser error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), this.row, values.toString());
+            String msg = String.format("Parser error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), tokenizer.getRow(), Arrays.toString(values));
             LOGGER.log(Level.SEVERE, msg, ex);
             throw ex;
         } catch (Exception ex) {
-            String msg = String.format("Unexpected error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), this.row, values.toString());
+            String msg = String.format("Unexpected error '%1$s' on %2$d line : '%3$s'", ex.getMessage(), tokenizer.getRow(), Arrays.toString(values));
             LOGGER.log(Level.SEVERE, msg, ex);
             throw new RuntimeException(msg);
         }
@@ -120,12 +102,7 @@ public class SeparatedIterator<E> implements Iterator<E> {
     }
 
     public static <T> Iterator<T> parse(Reader reader, Class<T> classType, Map<String, Set<ConstraintViolation<?>>> errors) throws IOException {
-        LineNumberReader lineReader;
-        if(reader instanceof LineNumberReader) {
-            lineReader = LineNumberReader.class.cast(reader);
-        } else {
-            lineReader = new LineNumberReader(reader);
-        }
+        BufferedReader lineReader = lineReader(reader);
         String line = lineReader.readLine();
         if(null == line) {
             return null;
@@ -153,27 +130,22 @@ public class SeparatedIterator<E> implements Iterator<E> {
 
 
     static <T> Iterator<T> parse(Reader reader, Class<T> classType, SeparatedValues.Type type, EntityParser parser, int skips, Map<String, Set<ConstraintViolation<?>>> errors) throws IOException {
-        char delimiter = SeparatedValues.CSV_BREAK;
-        switch(type) {
-        case TSV:
-            delimiter = SeparatedValues.TSV_BREAK;
-            break;
-        case CSV:
-        default:
-            delimiter = SeparatedValues.CSV_BREAK;
-            break;
+        final char delimiter = SeparatedValues.delimiter(type);
+        if (skips > 0) {
+            BufferedReader lineReader = lineReader(reader);
+            int count = 0;
+            while(count<skips && (null != lineReader.readLine())) {
+                ++count;
+            }
+            reader = lineReader;
         }
+        return new SeparatedIterator<T>(classType, reader, delimiter, parser, (null != errors), errors);
+    }
 
-        LineNumberReader lineReader;
-        if(reader instanceof LineNumberReader) {
-            lineReader = LineNumberReader.class.cast(reader);
-        } else {
-            lineReader = new LineNumberReader(reader);
-        }
-        int count = 0;
-        while(skips > 0 && count<skips && (null != lineReader.readLine())) {
-            ++count;
+    private static BufferedReader lineReader(Reader reader) {
+        if(reader instanceof BufferedReader) {
+            return BufferedReader.class.cast(reader);
         }
-        return new SeparatedIterator<T>(classType, lineReader, delimiter, parser, (null != errors), errors);
+        return new BufferedReader(reader);
     }
 }
@@ -0,0 +1,334 @@
+package net.tiny.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single pass CSV/TSV record tokenizer.
+ *
+ * Characters are read into a reusable buffer and every record is scanned once:
+ * delimiters, quoted values, back-slash escapes and quoted line breaks are resolved
+ * while reading. The unescaped field values are kept as slices of a reusable record
+ * buffer, a String is only created when a field is requested by {@link #get(int)}.
+ *
+ * <pre>
+ * SeparatedTokenizer tokenizer = new SeparatedTokenizer(reader, ',');
+ * while (tokenizer.next()) {
+ *     CharSequence id = tokenizer.slice(0);
+ *     String name = tokenizer.get(1);
+ * }
+ * </pre>
+ */
+public class SeparatedTokenizer implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean skipLF = false;
+
+    /** Unescaped values of the current record */
+    private char[] record = new char[256];
+    private int length = 0;
+    /** End offset of each field in the record buffer */
+    private int[] ends = new int[32];
+    private int size = 0;
+    private Slice[] slices = new Slice[0];
+
+    /** Raw text of the current record, only kept when enabled */
+    private boolean raw = false;
+    private char[] line = null;
+    private int lineLength = 0;
+
+    private long row = 0L;
+
+    public SeparatedTokenizer(Reader reader, char delimiter) {
+        this(reader, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SeparatedTokenizer(Reader reader, char delimiter, int bufferSize) {
+        if (null == reader) {
+            throw new IllegalArgumentException("Input argument is null");
+        }
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.buffer = new char[Math.max(bufferSize, 16)];
+    }
+
+    public SeparatedTokenizer(Reader reader, SeparatedValues.Type type) {
+        this(reader, SeparatedValues.delimiter(type));
+    }
+
+    /**
+     * Keep the raw text of every record, it is returned by {@link #line()}.
+     *
+     * @param enable Keep raw record text
+     * @return This tokenizer
+     */
+    public SeparatedTokenizer raw(boolean enable) {
+        raw = enable;
+        if (raw && null == line) {
+            line = new char[256];
+        }
+        return this;
+    }
+
+    /**
+     * Advance to the next record.
+     *
+     * @return false if the end of input is reached
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        length = 0;
+        size = 0;
+        lineLength = 0;
+        if (position >= limit && !fill()) {
+            return false;
+        }
+        if (skipLF) {
+            skipLF = false;
+            if (buffer[position] == '\n') {
+                position++;
+                if (position >= limit && !fill()) {
+                    return false;
+                }
+            }
+        }
+        row++;
+        final char[] buf = buffer;
+        final char sep = delimiter;
+        boolean escaped  = false;
+        boolean inQuotes = false;
+        int pos = position;
+        int lim = limit;
+        while (true) {
+            if (pos >= lim) {
+                position = pos;
+                if (!fill()) {
+                    break;
+                }
+                pos = position;
+                lim = limit;
+            }
+            char c = buf[pos++];
+            if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    // Skip the LF of CR+LF, maybe in the next buffer
+                    if (pos < lim) {
+                        if (buf[pos] == '\n') {
+                            pos++;
+                        }
+                    } else {
+                        skipLF = true;
+                    }
+                }
+                if (!inQuotes) {
+                    break;
+                }
+                if (skipLF) {
+                    position = pos;
+                    if (fill()) {
+                        pos = position;
+                        lim = limit;
+                        if (buf[pos] == '\n') {
+                            pos++;
+                        }
+                    }
+                    skipLF = false;
+                }
+                row++;
+                c = '\n';
+            }
+            if (raw) {
+                appendLine(c);
+            }
+            if (c == sep && !inQuotes) {
+                endField();
+            } else if (c == '\\' && !escaped) {
+                escaped = true;
+            } else if (c == SeparatedValues.VALUE_BOUNDARY && !escaped) {
+                inQuotes = !inQuotes;
+            } else {
+                escaped = false;
+                if (length == record.length) {
+                    record = Arrays.copyOf(record, length << 1);
+                }
+                record[length++] = c;
+            }
+        }
+        position = pos;
+        endField();
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = reader.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private void endField() {
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, size << 1);
+        }
+        ends[size++] = length;
+    }
+
+    private void appendLine(char c) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, lineLength << 1);
+        }
+        line[lineLength++] = c;
+    }
+
+    /**
+     * @return Field count of the current record
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Physical line number of the last read line
+     */
+    public long getRow() {
+        return row;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    private int start(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    /**
+     * @param index Field index
+     * @return Character count of the field value
+     */
+    public int length(int index) {
+        return ends[index] - start(index);
+    }
+
+    /**
+     * Field value as a reusable slice of the record buffer.
+     * The slice reflects the current record, it is only valid until the next call of {@link #next()}.
+     *
+     * @param index Field index
+     * @return Field value
+     */
+    public CharSequence slice(int index) {
+        start(index);
+        if (index >= slices.length) {
+            Slice[] array = Arrays.copyOf(slices, Math.max(size, index + 1));
+            for (int i = slices.length; i < array.length; i++) {
+                array[i] = new Slice(i);
+            }
+            slices = array;
+        }
+        return slices[index];
+    }
+
+    /**
+     * @param index Field index
+     * @return Field value
+     */
+    public String get(int index) {
+        final int s = start(index);
+        return new String(record, s, ends[index] - s);
+    }
+
+    public String[] toArray() {
+        final String[] values = new String[size];
+        int s = 0;
+        for (int i = 0; i < size; i++) {
+            values[i] = new String(record, s, ends[i] - s);
+            s = ends[i];
+        }
+        return values;
+    }
+
+    public List<String> toList() {
+        return new ArrayList<>(Arrays.asList(toArray()));
+    }
+
+    /**
+     * @return The raw text of current record, or the escaped values when raw text is not kept
+     */
+    public String line() {
+        if (raw) {
+            return new String(line, 0, lineLength);
+        }
+        final StringBuilder sb = new StringBuilder(length + size * 3);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            sb.append(SeparatedValues.escape(get(i)));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Override
+    public String toString() {
+        return line();
+    }
+
+    final class Slice implements CharSequence {
+        private final int index;
+
+        Slice(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return SeparatedTokenizer.this.length(index);
+        }
+
+        @Override
+        public char charAt(int i) {
+            final int s = start(index);
+            if (i < 0 || s + i >= ends[index]) {
+                throw new IndexOutOfBoundsException("Index: " + i);
+            }
+            return record[s + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int begin, int end) {
+            return toString().substring(begin, end);
+        }
+
+        @Override
+        public String toString() {
+            return get(index);
+        }
+    }
+}
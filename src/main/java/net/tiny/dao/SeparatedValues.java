@@ -1,7 +1,6 @@
 package net.tiny.dao;
 
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -78,6 +77,12 @@ public class SeparatedValues {
 		this(line, Type.CSV);
 	}
 
+	SeparatedValues(SeparatedTokenizer tokenizer) {
+		this.spliter = tokenizer.getDelimiter();
+		this.array = tokenizer.toList();
+		this.line = tokenizer.line();
+	}
+
 	public String[] toArray() {
 		return this.array.toArray(new String[this.array.size()]);
 	}
@@ -103,33 +108,21 @@ public class SeparatedValues {
 	}
 
 	public static Iterator<List<String>> parse(Reader reader, Type type) throws IOException {
-		char delimiter = CSV_BREAK;
+		return new ListRecords(reader, delimiter(type));
+	}
+
+	public static Iterator<SeparatedValues> parse(Reader reader, char delimiter) throws IOException {
+		return new Records(reader, delimiter);
+	}
+
+	static char delimiter(Type type) {
 		switch(type) {
 		case TSV:
-			delimiter = TSV_BREAK;
-			break;
+			return TSV_BREAK;
 		case CSV:
 		default:
-			delimiter = CSV_BREAK;
-			break;
-		}
-		LineNumberReader lineReader;
-		if(reader instanceof LineNumberReader) {
-			lineReader = LineNumberReader.class.cast(reader);
-		} else {
-			lineReader = new LineNumberReader(reader);
-		}
-		return new ListRecords(lineReader, delimiter);
-	}
-
-	public static Iterator<SeparatedValues> parse(Reader reader, char delimiter) throws IOException {
-		LineNumberReader lineReader;
-		if(reader instanceof LineNumberReader) {
-			lineReader = LineNumberReader.class.cast(reader);
-		} else {
-			lineReader = new LineNumberReader(reader);
+			return CSV_BREAK;
 		}
-		return new Records(lineReader, delimiter);
 	}
 
 	public static String[] csv(final String text) {
@@ -147,7 +140,9 @@ public class SeparatedValues {
 		StringBuilder s = new StringBuilder();
 	    boolean escaped  = false;
 	    boolean inQuotes = false;
-	    for (char c : text.toCharArray())  {
+	    final int length = text.length();
+	    for (int i = 0; i < length; i++)  {
+	        final char c = text.charAt(i);
 	        if (c == delimiter && !inQuotes) {
 	            list.add(s.toString());
 	            s.setLength(0);
@@ -164,62 +159,32 @@ public class SeparatedValues {
 	    return list;
 	}
 
-    static boolean brokenLine(final String text, final char delimiter) {
-		StringBuilder s = new StringBuilder();
-	    boolean escaped  = false;
-	    boolean inQuotes = false;
-	    for (char c : text.toCharArray())  {
-	        if (c == delimiter && !inQuotes) {
-	            s.setLength(0);
-	        } else if (c == '\\' && !escaped) {
-	            escaped = true;
-	        } else if (c == VALUE_BOUNDARY && !escaped) {
-	            inQuotes = !inQuotes;
-	        } else {
-	            escaped = false;
-	            s.append(c);
-	        }
-	    }
-	    return inQuotes;
-	}
-
 	static class ListRecords implements Iterator<List<String>> {
-		private final LineNumberReader reader;
-		private final char delimiter;
+		private final SeparatedTokenizer tokenizer;
 		private Throwable error;
-		private String lastLine;
+		private boolean ready;
 
-		public ListRecords(LineNumberReader reader,  char delimiter) {
-			this.reader = reader;
-			this.delimiter = delimiter;
+		public ListRecords(Reader reader, char delimiter) {
+			this.tokenizer = new SeparatedTokenizer(reader, delimiter);
 		}
 
 		@Override
 		public boolean hasNext() {
 			try {
-				String nextLine;
-				if( null != (this.lastLine = reader.readLine()) ) {
-					while ( brokenLine(this.lastLine, this.delimiter)
-							&& null != ( nextLine = reader.readLine() ) ) {
-						this.lastLine = this.lastLine.concat("\n").concat(nextLine);
-					}
-					return true;
-				} else {
-					return false;
-				}
-
+				this.ready = tokenizer.next();
+				return this.ready;
 			} catch (IOException ex) {
 				this.error = ex;
+				this.ready = false;
 				return false;
 			}
 		}
 
 		@Override
 		public List<String> next() {
-			if(null == this.lastLine)
+			if(!this.ready)
 				return null;
-			SeparatedValues values = new SeparatedValues(this.lastLine, delimiter);
-			return values.array;
+			return tokenizer.toList();
 		}
 
 		public boolean hasError() {
@@ -232,41 +197,31 @@ public class SeparatedValues {
 	}
 
 	static class Records implements Iterator<SeparatedValues> {
-		private final LineNumberReader reader;
-		private final char delimiter;
+		private final SeparatedTokenizer tokenizer;
 		private Throwable error;
-		private String lastLine;
+		private boolean ready;
 
-		public Records(LineNumberReader reader,  char delimiter) {
-			this.reader = reader;
-			this.delimiter = delimiter;
+		public Records(Reader reader, char delimiter) {
+			this.tokenizer = new SeparatedTokenizer(reader, delimiter).raw(true);
 		}
 
 		@Override
 		public boolean hasNext() {
 			try {
-				String nextLine;
-				if( null != (this.lastLine = reader.readLine()) ) {
-					while ( brokenLine(this.lastLine, this.delimiter)
-							&& null != ( nextLine = reader.readLine() ) ) {
-						this.lastLine = this.lastLine.concat("\n").concat(nextLine);
-					}
-					return true;
-				} else {
-					return false;
-				}
-
+				this.ready = tokenizer.next();
+				return this.ready;
 			} catch (IOException ex) {
 				this.error = ex;
+				this.ready = false;
 				return false;
 			}
 		}
 
 		@Override
 		public SeparatedValues next() {
-			if(null == this.lastLine)
+			if(!this.ready)
 				return null;
-			return new SeparatedValues(this.lastLine, delimiter);
+			return new SeparatedValues(tokenizer);
 		}
 
 		public boolean hasError() {
@@ -0,0 +1,184 @@
+package net.tiny.dao;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import net.tiny.dao.reference.ForeignKey;
+import net.tiny.dao.reference.SchemaParser;
+
+/**
+ * Ordering of the tables of a CSV data directory.
+ * <p>
+ * The file 'table-ordering.txt' lists the tables in a fixed order, one table per level.
+ * Without it, the tables are grouped in levels by their foreign keys: a table is in the
+ * level after all the tables it refers, so the tables of a level can be loaded in parallel.
+ */
+final class TableOrdering {
+
+    private static final Logger LOGGER = Logger.getLogger(TableOrdering.class.getName());
+
+    static final String TABLE_ORDERING_FILE = "table-ordering.txt";
+
+    private static final String CSV = ".csv";
+
+    @FunctionalInterface
+    interface TableTask<T> {
+        void run(T table) throws SQLException;
+    }
+
+    private TableOrdering() {}
+
+    static boolean exists(String path) {
+        return Files.exists(Paths.get(path, TABLE_ORDERING_FILE));
+    }
+
+    /**
+     * The table names of the CSV files in the directory, gzip compressed or not.
+     */
+    static List<String> tables(String path) throws IOException {
+        List<String> tables = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(path), "*{" + CSV + "," + CSV + Compression.GZIP_SUFFIX + "}")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String table = name.substring(0, name.lastIndexOf(CSV));
+                if (!tables.contains(table)) {
+                    tables.add(table);
+                }
+            }
+        }
+        Collections.sort(tables);
+        return tables;
+    }
+
+    /**
+     * The CSV file of the table, or its gzip compressed file when only this one exists.
+     */
+    static Path file(String path, String table) {
+        Path file = Paths.get(path, table + CSV);
+        Path gzip = Paths.get(path, table + CSV + Compression.GZIP_SUFFIX);
+        return (!Files.exists(file) && Files.exists(gzip)) ? gzip : file;
+    }
+
+    /**
+     * The current schema of the connection, or null to search all the schemas
+     * when the driver does not tell it.
+     */
+    static String schema(Connection connection) {
+        try {
+            return connection.getSchema();
+        } catch (SQLException | AbstractMethodError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Group the tables in levels, a table only refers the tables of the previous levels.
+     * The tables of a foreign key cycle are put in their own levels, in the given order.
+     *
+     * @param connection JDBC Connection
+     * @param schema The schema name, null for all the schemas
+     * @param tables The table names
+     * @return The levels of tables
+     * @throws SQLException
+     */
+    static List<List<String>> levels(Connection connection, String schema, List<String> tables) throws SQLException {
+        final SchemaParser parser = new SchemaParser(connection);
+        final Map<String, String> names = new LinkedHashMap<>();
+        for (String table : tables) {
+            names.put(table.toUpperCase(), table);
+        }
+        final Map<String, Set<String>> depends = new LinkedHashMap<>();
+        for (String table : names.keySet()) {
+            Set<String> refers = new HashSet<>();
+            for (ForeignKey key : parser.getImportedKeys(schema, names.get(table))) {
+                String refer = key.getPktableName().toUpperCase();
+                if (names.containsKey(refer) && !refer.equals(table)) {
+                    refers.add(refer);
+                }
+            }
+            depends.put(table, refers);
+        }
+        final List<List<String>> levels = new ArrayList<>();
+        while (!depends.isEmpty()) {
+            List<String> level = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : depends.entrySet()) {
+                if (Collections.disjoint(entry.getValue(), depends.keySet())) {
+                    level.add(entry.getKey());
+                }
+            }
+            if (level.isEmpty()) {
+                String table = depends.keySet().iterator().next();
+                LOGGER.warning(String.format("[CSV] foreign key cycle on table '%s' %s", table, depends.get(table)));
+                level.add(table);
+            }
+            List<String> list = new ArrayList<>();
+            for (String table : level) {
+                depends.remove(table);
+                list.add(names.get(table));
+            }
+            levels.add(list);
+        }
+        return levels;
+    }
+
+    /**
+     * Run the task on the tables, level after level, the tables of a level in parallel.
+     *
+     * @param levels The levels of tables
+     * @param threads The maximum number of parallel tasks
+     * @param task The task of a table
+     * @throws SQLException The first error of a task, after all the tasks of its level ended
+     */
+    static <T> void execute(List<List<T>> levels, int threads, TableTask<T> task) throws SQLException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new ParallelSeparatedIterator.ParserThreadFactory("csv-table"));
+        try {
+            for (List<T> level : levels) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (T table : level) {
+                    futures.add(executor.submit(() -> {
+                        task.run(table);
+                        return null;
+                    }));
+                }
+                SQLException error = null;
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (null == error) {
+                            error = (cause instanceof SQLException) ? (SQLException)cause
+                                    : new SQLException(cause.getMessage(), cause);
+                        }
+                    }
+                }
+                if (null != error) {
+                    throw error;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
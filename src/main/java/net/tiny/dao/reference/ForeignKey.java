@@ -0,0 +1,84 @@
+package net.tiny.dao.reference;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "fkey")
+public class ForeignKey {
+	@XmlAttribute(name = "name")
+	private String fkName;
+
+	@XmlAttribute(name = "column")
+	private String fkcolumnName;
+
+	@XmlAttribute(name = "table")
+	private String fktableName;
+
+	@XmlAttribute(name = "refTable")
+	private String pktableName;
+
+	@XmlAttribute(name = "refColumn")
+	private String pkcolumnName;
+
+	@XmlAttribute(name = "keySeq")
+	private int keySeq;
+
+	public String getName() {
+		return getFkName();
+	}
+
+	public void setName(String name) {
+		setFkName(name);
+	}
+
+	public String getFkName() {
+		return fkName;
+	}
+
+	public void setFkName(String fkName) {
+		this.fkName = fkName;
+	}
+
+	public String getFkcolumnName() {
+		return fkcolumnName;
+	}
+
+	public void setFkcolumnName(String fkcolumnName) {
+		this.fkcolumnName = fkcolumnName;
+	}
+
+	public String getFktableName() {
+		return fktableName;
+	}
+
+	public void setFktableName(String fktableName) {
+		this.fktableName = fktableName;
+	}
+
+	public String getPktableName() {
+		return pktableName;
+	}
+
+	public void setPktableName(String pktableName) {
+		this.pktableName = pktableName;
+	}
+
+	public String getPkcolumnName() {
+		return pkcolumnName;
+	}
+
+	public void setPkcolumnName(String pkcolumnName) {
+		this.pkcolumnName = pkcolumnName;
+	}
+
+	public int getKeySeq() {
+		return keySeq;
+	}
+
+	public void setKeySeq(int keySeq) {
+		this.keySeq = keySeq;
+	}
+}
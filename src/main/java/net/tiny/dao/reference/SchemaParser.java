@@ -109,7 +109,7 @@ public class SchemaParser {
         List<Column> list = new ArrayList<Column>();
         try {
             DatabaseMetaData dmd = getDatabaseMetaData();
-            rs = dmd.getColumns(null, schema.toUpperCase(), table.toUpperCase(), null);
+            rs = dmd.getColumns(null, identifier(schema), identifier(table), null);
             while (rs.next()) {
                 list.add(setAttributes(Column.class, rs));
             }
@@ -124,7 +124,7 @@ public class SchemaParser {
         List<PrimaryKey> list = new ArrayList<PrimaryKey>();
         try {
             DatabaseMetaData dmd = getDatabaseMetaData();
-            rs = dmd.getPrimaryKeys(null, schema.toUpperCase(), table.toUpperCase());
+            rs = dmd.getPrimaryKeys(null, identifier(schema), identifier(table));
             while (rs.next()) {
                 list.add(setAttributes(PrimaryKey.class, rs));
             }
@@ -134,12 +134,30 @@ public class SchemaParser {
         return list;
     }
 
+    /**
+     * The foreign keys of the table, which refer the primary keys of other tables.
+     */
+    public List<ForeignKey> getImportedKeys(String schema, String table) throws SQLException {
+        ResultSet rs = null;
+        List<ForeignKey> list = new ArrayList<ForeignKey>();
+        try {
+            DatabaseMetaData dmd = getDatabaseMetaData();
+            rs = dmd.getImportedKeys(null, identifier(schema), identifier(table));
+            while (rs.next()) {
+                list.add(setAttributes(ForeignKey.class, rs));
+            }
+        } finally {
+            close (rs);
+        }
+        return list;
+    }
+
     public List<Index> getIndexs(String schema, String table) throws SQLException {
         ResultSet rs = null;
         List<Index> list = new ArrayList<Index>();
         try {
             DatabaseMetaData dmd = getDatabaseMetaData();
-            rs = dmd.getIndexInfo(null, schema.toUpperCase(), table.toUpperCase(), false, true);
+            rs = dmd.getIndexInfo(null, identifier(schema), identifier(table), false, true);
             while (rs.next()) {
                 list.add(setAttributes(Index.class, rs));
             }
@@ -174,7 +192,7 @@ public class SchemaParser {
         try {
             DatabaseMetaData dmd = getDatabaseMetaData();
             String[] tps = new String[] {"TABLE"};
-            rs = dmd.getTables(null, schema.toUpperCase(), "%", tps);
+            rs = dmd.getTables(null, identifier(schema), "%", tps);
             while (rs.next()) {
                 list.add(rs.getString(TABLE_NAME).toUpperCase());
             }
@@ -191,6 +209,25 @@ public class SchemaParser {
         return databaseMetaData;
     }
 
+    /**
+     * The name in the case of the unquoted identifiers of the database, upper case on H2,
+     * lower case on PostgreSQL, as is on a database of mixed case identifiers.
+     * A null name matches all the schemas of the meta data.
+     */
+    private String identifier(String name) throws SQLException {
+        if (null == name) {
+            return null;
+        }
+        DatabaseMetaData dmd = getDatabaseMetaData();
+        if (dmd.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase();
+        }
+        if (dmd.storesMixedCaseIdentifiers()) {
+            return name;
+        }
+        return name.toUpperCase();
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static <T> T setAttributes(Class<T>classType, ResultSet rs) throws SQLException {
         try {
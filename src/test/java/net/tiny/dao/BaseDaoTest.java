@@ -2,8 +2,27 @@ package net.tiny.dao;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
 
 import org.junit.jupiter.api.Test;
 
@@ -44,4 +63,741 @@ public class BaseDaoTest {
         System.out.println(response);
         entityManager.getTransaction().commit();
     }
+    @Test
+    public void testInsertAll() throws Exception {
+        entityManager.getTransaction().begin();
+
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setBatchSize(3);
+        long count = dao.count();
+
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Log log = new Log();
+            log.setContent("content" + i);
+            log.setOperation("bulk");
+            log.setOperator("user");
+            log.setIp("192.168.80.180");
+            logs.add(log);
+        }
+        BulkResult<Long> result = dao.insertAll(logs.iterator());
+        System.out.println(result);
+        assertEquals(10, result.getCount());
+        assertEquals(logs.get(9).getId(), result.getKeys().get(9));
+        assertNotNull(logs.get(0).getCreateDate());
+        assertFalse(dao.isManaged(logs.get(0)));
+        assertEquals(count + 10L, dao.count());
+        entityManager.getTransaction().commit();
+    }
+
+    @Test
+    public void testKeysetPage() throws Exception {
+        entityManager.getTransaction().begin();
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        for (int i = 0; i < 25; i++) {
+            Log log = new Log();
+            log.setOperation("keyset");
+            log.setOperator("user" + (i % 4));
+            log.setIp("192.168.80." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Pageable pageable = new Pageable(1, 10);
+            pageable.getFilters().add(Filter.eq("operation", "keyset"));
+            pageable.getOrders().add(Order.asc("operator"));
+            pageable.setKeyset(true);
+            pageable.setCursor(cursor);
+            Page<Log> page = dao.findPage(pageable);
+            assertEquals(25L, page.getTotal());
+            for (Log log : page.getContent()) {
+                ids.add(log.getId());
+            }
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(25, ids.size());
+        assertEquals(25L, ids.stream().distinct().count());
+    }
+
+    @Test
+    public void testKeysetPageNulls() throws Exception {
+        entityManager.getTransaction().begin();
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        for (int i = 0; i < 10; i++) {
+            Log log = new Log();
+            log.setOperation("keyset-null");
+            // The nullable operator of every third row is null
+            log.setOperator((i % 3 == 0) ? null : "user" + (i % 2));
+            log.setIp("192.168.81." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        for (Order order : Arrays.asList(Order.asc("operator"), Order.desc("operator"))) {
+            List<Log> logs = new ArrayList<>();
+            String cursor = null;
+            do {
+                Pageable pageable = new Pageable(1, 2);
+                pageable.getFilters().add(Filter.eq("operation", "keyset-null"));
+                pageable.getOrders().add(order);
+                pageable.setKeyset(true);
+                pageable.setCursor(cursor);
+                Page<Log> page = dao.findPage(pageable);
+                assertEquals(10L, page.getTotal());
+                logs.addAll(page.getContent());
+                cursor = page.getCursor();
+            } while (cursor != null);
+            assertEquals(10, logs.size());
+            assertEquals(10L, logs.stream().map(Log::getId).distinct().count());
+            // Nulls first in ascending order, last in descending order
+            int first = (order.getDirection() == Order.Direction.asc) ? 0 : 6;
+            for (int i = 0; i < logs.size(); i++) {
+                assertEquals(i >= first && i < first + 4, logs.get(i).getOperator() == null);
+            }
+        }
+    }
+
+    @Test
+    public void testCountCache() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setCountCacheTtl(60000L);
+
+        Pageable pageable = new Pageable(1, 10);
+        pageable.getFilters().add(Filter.eq("operation", "count"));
+        assertEquals(0L, dao.findPage(pageable).getTotal());
+
+        entityManager.getTransaction().begin();
+        Log log = new Log();
+        log.setOperation("count");
+        log.setOperator("user");
+        log.setIp("192.168.80.180");
+        dao.insert(log);
+        entityManager.getTransaction().commit();
+
+        // Invalidated by the insert
+        pageable = new Pageable(1, 10);
+        pageable.getFilters().add(Filter.eq("operation", "count"));
+        pageable.setLazyTotal(true);
+        Page<Log> page = dao.findPage(pageable);
+        assertEquals(1, page.getContent().size());
+        assertEquals(1L, page.getTotal());
+    }
+
+    @Test
+    public void testEstimateCount() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 10; i++) {
+            Log log = new Log();
+            log.setOperation("estimate");
+            log.setOperator("user");
+            log.setIp("192.168.80.180");
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        // Outside a transaction
+        long count = dao.count();
+        assertEquals(count, dao.estimateCount());
+        assertEquals(count, DaoHelper.estimateCount(entityManager, dao.getTableName()));
+
+        Pageable pageable = new Pageable(1, 5);
+        pageable.setEstimatedTotal(true);
+        assertEquals(count, dao.findPage(pageable).getTotal());
+
+        entityManager.getTransaction().begin();
+        assertEquals(count, DaoHelper.estimateCount(dao.getJdbcConnection(), dao.getTableName()));
+        entityManager.getTransaction().rollback();
+    }
+
+    @Test
+    public void testFindAllCursor() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setFetchSize(5);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 12; i++) {
+            Log log = new Log();
+            log.setOperation("cursor");
+            log.setOperator("user");
+            log.setIp("192.168.80.180");
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        long count = dao.count();
+        Iterator<Log> it = dao.findAll();
+        Log first = it.next();
+        assertTrue(entityManager.contains(first));
+        int num = 1;
+        while (it.hasNext()) {
+            assertNotNull(it.next());
+            num++;
+        }
+        assertEquals(count, num);
+        // Detached when the next fetch was read
+        assertFalse(entityManager.contains(first));
+
+        try (Stream<Log> logs = dao.finds()) {
+            assertEquals(count, logs.count());
+        }
+
+        // Closed when the iteration stops before the end
+        ResultCursor<Log> cursor;
+        try (ResultCursor<Log> logs = dao.findAll()) {
+            assertNotNull(logs.next());
+            cursor = logs;
+        }
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testFindPageBenchmark() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 20; i++) {
+            Log log = new Log();
+            log.setOperation("bench");
+            log.setOperator("user" + (i % 4));
+            log.setIp("10.0.8." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        final int threads = 8;
+        final int pages = 500;
+        // Warm up the criteria and count query paths
+        assertEquals(50, findPages(1, 50));
+
+        long st = System.nanoTime();
+        assertEquals(pages, findPages(1, pages));
+        long single = System.nanoTime() - st;
+
+        st = System.nanoTime();
+        assertEquals(threads * pages, findPages(threads, pages));
+        long concurrent = System.nanoTime() - st;
+
+        System.out.println(String.format("[FindPage] 1 thread %1$d pages: %2$dms (%3$d pages/s), %4$d threads %5$d pages: %6$dms (%7$d pages/s)",
+                pages, single / 1000000L, pages * 1000000000L / single,
+                threads, threads * pages, concurrent / 1000000L, threads * pages * 1000000000L / concurrent));
+    }
+
+    // Criteria pages counted by the count query, one DAO and entity manager per thread
+    private int findPages(int threads, int pages) throws Exception {
+        final EntityManagerFactory emf = entityManager.getEntityManagerFactory();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        LogDao dao = new LogDao();
+                        dao.setEntityManager(em);
+                        CriteriaBuilder builder = em.getCriteriaBuilder();
+                        int num = 0;
+                        for (int i = 0; i < pages; i++) {
+                            CriteriaQuery<Log> query = builder.createQuery(Log.class);
+                            Root<Log> root = query.from(Log.class);
+                            query.select(root).where(builder.equal(root.get("operation"), "bench"));
+                            Page<Log> page = dao.findPage(query, new Pageable(1 + i % 4, 5));
+                            assertEquals(20L, page.getTotal());
+                            assertEquals(5, page.getContent().size());
+                            num++;
+                        }
+                        return num;
+                    } finally {
+                        em.close();
+                    }
+                }));
+            }
+            int num = 0;
+            for (Future<Integer> future : futures) {
+                num += future.get();
+            }
+            return num;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFilterQueryPlan() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 6; i++) {
+            Log log = new Log();
+            log.setOperation("plan");
+            log.setOperator("user" + (i % 3));
+            log.setIp("192.168.80.18" + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        // Same shape, other values
+        assertEquals(2L, dao.count(Filter.eq("operation", "plan"), Filter.eq("operator", "user0")));
+        assertEquals(2L, dao.count(Filter.eq("operation", "plan"), Filter.eq("operator", "USER1", true)));
+        assertEquals(4L, dao.count(Filter.eq("operation", "plan"), Filter.in("operator", Arrays.asList("user0", "user2"))));
+
+        List<Filter> filters = Arrays.asList(Filter.eq("operation", "plan"), Filter.ne("operator", "user2"));
+        List<Order> orders = Arrays.asList(Order.asc("ip"));
+        List<Log> logs = dao.findList(0, 10, filters, orders);
+        assertEquals(4, logs.size());
+        assertEquals("192.168.80.180", logs.get(0).getIp());
+
+        Pageable pageable = new Pageable(1, 3);
+        pageable.setFilters(new ArrayList<>(filters));
+        pageable.setOrders(new ArrayList<>(orders));
+        Page<Log> page = dao.findPage(pageable);
+        assertEquals(4L, page.getTotal());
+        assertEquals(3, page.getContent().size());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.count(Filter.eq("operator = 'user0' or 1", 1)));
+    }
+
+    @Test
+    public void testSelectParameters() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 4; i++) {
+            Log log = new Log();
+            log.setOperation("select");
+            log.setOperator(i % 2 == 0 ? "o'neil" : "user");
+            log.setIp("10.0.0." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        Map<String, Object> where = new LinkedHashMap<>();
+        where.put("operation", "select");
+        where.put("operator", "o'neil");
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("ip", "desc");
+        List<Log> logs = dao.select(where, order);
+        assertEquals(2, logs.size());
+        assertEquals("10.0.0.2", logs.get(0).getIp());
+        assertEquals(2L, dao.count(where));
+
+        // Same JPQL, other values
+        where.put("operator", "user");
+        assertEquals(2, dao.select(where, order).size());
+        where.put("operator", "nobody' or '1' = '1");
+        assertTrue(dao.select(where, order).isEmpty());
+        assertFalse(dao.exists(where));
+
+        order.put("ip", "desc, operator");
+        assertThrows(IllegalArgumentException.class, () -> dao.select(where, order));
+    }
+
+    @Test
+    public void testFindListByIds() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setChunkSize(2);
+
+        entityManager.getTransaction().begin();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Log log = new Log();
+            log.setOperation("ids");
+            log.setOperator("user" + i);
+            log.setIp("10.0.1." + i);
+            dao.insert(log);
+            ids.add(log.getId());
+        }
+        entityManager.getTransaction().commit();
+
+        // In the order of the IDs, not found skipped
+        List<Long> request = Arrays.asList(ids.get(4), -1L, ids.get(0), ids.get(2), ids.get(0));
+        List<Log> logs = dao.findList(request);
+        assertEquals(4, logs.size());
+        assertEquals(ids.get(4), logs.get(0).getId());
+        assertEquals(ids.get(0), logs.get(1).getId());
+        assertEquals(ids.get(2), logs.get(2).getId());
+        assertSame(logs.get(1), logs.get(3));
+        assertTrue(entityManager.contains(logs.get(0)));
+
+        entityManager.clear();
+        logs = dao.findList(request, 3);
+        assertEquals(4, logs.size());
+        assertEquals("user4", logs.get(0).getOperator());
+        assertEquals("user2", logs.get(2).getOperator());
+    }
+
+    @Test
+    public void testEntityCache() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        Log log = new Log();
+        log.setOperation("cache");
+        log.setOperator("user");
+        log.setIp("10.0.2.1");
+        dao.insert(log);
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        EntityCache.enable(Log.class, 10L, 60000L);
+        try {
+            Log first = dao.find(log.getId()).get();
+            Log cached = dao.find(log.getId()).get();
+            assertEquals(1L, EntityCache.getMisses(Log.class));
+            assertEquals(1L, EntityCache.getHits(Log.class));
+            // A detached copy
+            assertNotSame(first, cached);
+            assertFalse(entityManager.contains(cached));
+
+            cached.setOperator("admin");
+            entityManager.getTransaction().begin();
+            dao.update(cached);
+            entityManager.getTransaction().commit();
+            assertEquals("admin", dao.find(log.getId()).get().getOperator());
+            assertEquals(2L, EntityCache.getMisses(Log.class));
+
+            // Cleared by the named update and the native SQL
+            entityManager.getTransaction().begin();
+            assertEquals("named", dao.updateNamed("Log.updateOperator", log.getId()).get().getOperator());
+            entityManager.getTransaction().commit();
+            assertEquals("named", dao.find(log.getId()).get().getOperator());
+            assertEquals(3L, EntityCache.getMisses(Log.class));
+            entityManager.getTransaction().begin();
+            dao.executeNativeSQL("UPDATE xx_log SET operator = 'native' WHERE id = " + log.getId());
+            entityManager.getTransaction().commit();
+            entityManager.clear();
+            assertEquals("native", dao.find(log.getId()).get().getOperator());
+            assertEquals(4L, EntityCache.getMisses(Log.class));
+
+            // Not put from a transaction rolled back
+            entityManager.getTransaction().begin();
+            Log pending = new Log();
+            pending.setOperation("cache");
+            pending.setOperator("user");
+            pending.setIp("10.0.2.2");
+            dao.insert(pending);
+            assertTrue(dao.find(pending.getId()).isPresent());
+            entityManager.getTransaction().rollback();
+            entityManager.clear();
+            assertFalse(dao.find(pending.getId()).isPresent());
+
+            entityManager.getTransaction().begin();
+            dao.delete(dao.find(log.getId()).get());
+            entityManager.getTransaction().commit();
+            assertFalse(dao.find(log.getId()).isPresent());
+        } finally {
+            EntityCache.disable(Log.class);
+        }
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setResultCacheTtl(60000L);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 3; i++) {
+            Log log = new Log();
+            log.setOperation("result");
+            log.setOperator("user" + i);
+            log.setIp("10.0.3." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        List<Filter> filters = Arrays.asList(Filter.eq("operation", "result"));
+        List<Order> orders = Arrays.asList(Order.asc("ip"));
+        List<Log> logs = dao.findList(0, 10, filters, orders);
+        assertEquals(3, logs.size());
+        entityManager.clear();
+        List<Log> cached = dao.findList(0, 10, filters, orders);
+        assertEquals(3, cached.size());
+        assertEquals(logs.get(0).getId(), cached.get(0).getId());
+        assertTrue(entityManager.contains(cached.get(0)));
+
+        Pageable pageable = new Pageable(1, 2);
+        pageable.setFilters(new ArrayList<>(filters));
+        assertEquals(3L, dao.findPage(pageable).getTotal());
+
+        // Cleared by the insert
+        entityManager.getTransaction().begin();
+        Log log = new Log();
+        log.setOperation("result");
+        log.setOperator("user3");
+        log.setIp("10.0.3.3");
+        dao.insert(log);
+        entityManager.getTransaction().commit();
+        assertEquals(4, dao.findList(0, 10, filters, orders).size());
+        pageable = new Pageable(1, 2);
+        pageable.setFilters(new ArrayList<>(filters));
+        assertEquals(4L, dao.findPage(pageable).getTotal());
+    }
+
+    @Test
+    public void testCacheTransaction() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setCountCacheTtl(60000L);
+        dao.setResultCacheTtl(60000L);
+        EntityManager other = entityManager.getEntityManagerFactory().createEntityManager();
+        LogDao reader = new LogDao();
+        reader.setEntityManager(other);
+        reader.setCountCacheTtl(60000L);
+        reader.setResultCacheTtl(60000L);
+
+        List<Filter> filters = Arrays.asList(Filter.eq("operation", "pending"));
+        Pageable pageable = new Pageable(1, 10);
+        pageable.setFilters(new ArrayList<>(filters));
+        try {
+            entityManager.getTransaction().begin();
+            Log log = new Log();
+            log.setOperation("pending");
+            log.setOperator("user");
+            log.setIp("10.0.6.1");
+            dao.insert(log);
+            dao.flush();
+            // Not cached while the insert is pending
+            assertEquals(1L, dao.findPage(pageable).getTotal());
+            assertEquals(0L, reader.findPage(pageable).getTotal());
+            assertEquals(0, reader.findList(0, 10, filters, null).size());
+
+            // The results read before the commit are dropped
+            dao.commitAndContinue();
+            assertEquals(1L, reader.findPage(pageable).getTotal());
+            assertEquals(1, reader.findList(0, 10, filters, null).size());
+
+            log = new Log();
+            log.setOperation("pending");
+            log.setOperator("user");
+            log.setIp("10.0.6.2");
+            dao.insert(log);
+            dao.flush();
+            assertEquals(2L, dao.findPage(pageable).getTotal());
+            assertEquals(2, dao.findList(0, 10, filters, null).size());
+            // No phantom row after the rollback
+            dao.rollbackAndContinue();
+            assertEquals(1L, dao.findPage(pageable).getTotal());
+            assertEquals(1, dao.findList(0, 10, filters, null).size());
+        } finally {
+            entityManager.getTransaction().rollback();
+            other.close();
+        }
+    }
+
+    @Test
+    public void testPartitionScan() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setFetchSize(3);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 20; i++) {
+            Log log = new Log();
+            log.setOperation("scan");
+            log.setOperator("user" + i);
+            log.setIp("10.0.4." + i);
+            dao.insert(log);
+        }
+        // Negative IDs are in the partitions of their absolute values
+        dao.executeNativeSQL("INSERT INTO xx_log (id, create_date, modify_date, ip, operation, operator)"
+                + " VALUES (-5, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, '10.0.4.99', 'scan', 'negative')");
+        entityManager.getTransaction().commit();
+        long total = dao.count();
+
+        for (PartitionScan.Mode mode : PartitionScan.Mode.values()) {
+            Set<Long> ids = ConcurrentHashMap.newKeySet();
+            assertEquals(total, dao.scan(mode, 4, log -> ids.add(log.getId())));
+            assertEquals(total, ids.size());
+
+            try (Stream<Log> logs = dao.scans(mode, 4)) {
+                assertTrue(logs.isParallel());
+                Set<Long> scanned = logs.map(Log::getId).collect(Collectors.toSet());
+                assertEquals(ids, scanned);
+            }
+            assertTrue(ids.contains(-5L));
+        }
+        // Read on other entity managers
+        assertEquals(0L, dao.scans(PartitionScan.Mode.RANGE, 2).filter(entityManager::contains).count());
+    }
+
+    @Test
+    public void testAsyncDao() throws Exception {
+        try (AsyncDao<Log, Long> dao = new AsyncDao<>(entityManager.getEntityManagerFactory(), Long.class, Log.class, 2)) {
+            Log log = new Log();
+            log.setOperation("async");
+            log.setOperator("user");
+            log.setIp("10.0.5.1");
+            Long id = dao.insert(log).get().getId();
+            assertNotNull(id);
+
+            Optional<Log> found = dao.find(id).get();
+            assertTrue(found.isPresent());
+            assertEquals("async", found.get().getOperation());
+            assertFalse(entityManager.contains(found.get()));
+
+            List<Filter> filters = Arrays.asList(Filter.eq("operation", "async"));
+            Pageable pageable = new Pageable(3, 10);
+            pageable.setFilters(new ArrayList<>(filters));
+            Page<Log> page = dao.findPage(pageable).get();
+            // After the last page
+            assertEquals(1, page.getPageNumber());
+            assertEquals(1L, page.getTotal());
+            assertEquals(id, page.getContent().get(0).getId());
+            assertEquals(1L, dao.count(filters.toArray(new Filter[0])).get().longValue());
+
+            // Estimated out of any transaction of the pooled entity managers
+            Pageable estimated = new Pageable(1, 10);
+            estimated.setEstimatedTotal(true);
+            assertTrue(dao.count(estimated).get() > 0L);
+
+            assertTrue(dao.deleteById(id).get());
+            assertFalse(dao.find(id).get().isPresent());
+        }
+    }
+
+    @Test
+    public void testPublisher() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.setFetchSize(2);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 5; i++) {
+            Log log = new Log();
+            log.setOperation("publish");
+            log.setOperator("user" + i);
+            log.setIp("10.0.6." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+
+        Map<String, Object> where = new LinkedHashMap<>();
+        where.put("operation", "publish");
+        List<Log> received = new ArrayList<>();
+        List<String> signals = new ArrayList<>();
+        ResultPublisher.Subscription[] subscription = new ResultPublisher.Subscription[1];
+        dao.publish(where, null).subscribe(new ResultPublisher.Subscriber<Log>() {
+            @Override
+            public void onSubscribe(ResultPublisher.Subscription s) {
+                subscription[0] = s;
+            }
+            @Override
+            public void onNext(Log item) {
+                received.add(item);
+            }
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add("error");
+            }
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+        // Nothing read before a request
+        assertTrue(received.isEmpty());
+        subscription[0].request(2);
+        assertEquals(2, received.size());
+        assertFalse(entityManager.contains(received.get(0)));
+        subscription[0].request(10);
+        assertEquals(5, received.size());
+        assertEquals(Arrays.asList("complete"), signals);
+
+        // Cancelled after the first one
+        received.clear();
+        signals.clear();
+        dao.publish().subscribe(new ResultPublisher.Subscriber<Log>() {
+            private ResultPublisher.Subscription s;
+            @Override
+            public void onSubscribe(ResultPublisher.Subscription s) {
+                this.s = s;
+                s.request(Long.MAX_VALUE);
+            }
+            @Override
+            public void onNext(Log item) {
+                received.add(item);
+                s.cancel();
+            }
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add("error");
+            }
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+        assertEquals(1, received.size());
+        assertTrue(signals.isEmpty());
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 3; i++) {
+            Log log = new Log();
+            log.setOperation("projection");
+            log.setOperator("user" + i);
+            log.setIp("10.0.7." + i);
+            dao.insert(log);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        List<Filter> filters = Arrays.asList(Filter.eq("operation", "projection"));
+        List<Order> orders = Arrays.asList(Order.asc("operator"));
+        List<Object[]> rows = dao.findProjection(Arrays.asList("operator", "ip"), 0, 10, filters, orders);
+        assertEquals(3, rows.size());
+        assertEquals("user0", rows.get(0)[0]);
+        assertEquals("10.0.7.0", rows.get(0)[1]);
+
+        List<Object[]> single = dao.findProjection(Arrays.asList("operator"), 1, 1, filters, orders);
+        assertEquals(1, single.size());
+        assertEquals("user1", single.get(0)[0]);
+
+        Pageable pageable = new Pageable(2, 2);
+        pageable.setFilters(new ArrayList<>(filters));
+        pageable.setOrders(new ArrayList<>(orders));
+        Page<LogView> page = dao.findProjectionPage(LogView.class, Arrays.asList("operator", "ip"), pageable);
+        assertEquals(3L, page.getTotal());
+        assertEquals(1, page.getContent().size());
+        assertEquals("user2", page.getContent().get(0).operator);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.findProjection(Arrays.asList("unknown"), 0, 1, filters, orders));
+    }
+
+    public static class LogView {
+        final String operator;
+        final String ip;
+
+        public LogView(String operator, String ip) {
+            this.operator = operator;
+            this.ip = ip;
+        }
+    }
 }
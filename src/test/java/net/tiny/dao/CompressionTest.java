@@ -0,0 +1,56 @@
+package net.tiny.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class CompressionTest {
+
+    @Test
+    public void testGzip() throws Exception {
+        assertTrue(Compression.gzip(Paths.get("target/XX_LOG.csv.gz")));
+        assertTrue(Compression.gzip(Paths.get("target/XX_LOG.TSV.GZ")));
+        assertFalse(Compression.gzip(Paths.get("target/XX_LOG.csv")));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Path gz = Paths.get("target/compression-test.csv.gz");
+        Files.deleteIfExists(gz);
+        final int rows = 100000;
+        try (Writer writer = Compression.writer(gz, true)) {
+            writer.write("ID,NAME\r\n");
+            for (int i = 1; i <= rows; i++) {
+                writer.write(i + ",\"name" + i + "\"\r\n");
+            }
+        }
+        // A standard gzip file
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(gz))) {
+            assertEquals('I', in.read());
+        }
+
+        long count = 0L;
+        try (BufferedReader reader = Compression.reader(gz)) {
+            assertEquals("ID,NAME", reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                count++;
+                assertEquals(count + ",\"name" + count + "\"", line);
+            }
+        }
+        assertEquals(rows, count);
+
+        // Close before the end of file
+        try (BufferedReader reader = Compression.reader(gz)) {
+            assertEquals("ID,NAME", reader.readLine());
+        }
+        Files.deleteIfExists(gz);
+    }
+}
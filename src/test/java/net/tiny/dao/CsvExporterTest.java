@@ -2,11 +2,13 @@ package net.tiny.dao;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.BufferedReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -63,4 +65,88 @@ public class CsvExporterTest {
         assertEquals(5, lines.size());
         Files.deleteIfExists(csv);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamExportCSV() throws Exception {
+        Path csv = Paths.get("target/XX_LOG-stream.csv");
+        Files.deleteIfExists(csv);
+
+        CsvExporter.Options options = new CsvExporter.Options(csv.toString(), "xx_log")
+                .verbose(true)
+                .stream(true)
+                .fetchSize(2);
+        Connection conn = ds.getConnection();
+        CsvExporter.save(conn, options);
+        conn.close();
+
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).startsWith("ID,"));
+        Files.deleteIfExists(csv);
+    }
+
+    @Test
+    public void testDaoStreamExportCSV() throws Exception {
+        Path csv = Paths.get("target/XX_LOG-dao.csv");
+        Files.deleteIfExists(csv);
+
+        entityManager.getTransaction().begin();
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        dao.executeNativeSQL("DELETE FROM xx_log WHERE id = 4");
+
+        CsvExporter.Options options = new CsvExporter.Options(csv.toString(), "xx_log")
+                .stream(true);
+        CsvExporter.save(dao, options);
+        assertEquals(4, Files.readAllLines(csv).size());
+
+        // The pending delete is not committed by the export
+        entityManager.getTransaction().rollback();
+        assertEquals(4L, dao.count());
+        Files.deleteIfExists(csv);
+    }
+
+    @Test
+    public void testPartitionedExportCSV() throws Exception {
+        Path csv = Paths.get("target/XX_LOG-partition.csv");
+        Files.deleteIfExists(csv);
+
+        CsvExporter.Options options = new CsvExporter.Options(csv.toString(), "xx_log")
+                .verbose(true)
+                .partitions(2);
+        assertEquals(4L, CsvExporter.save(ds, options));
+
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(1).startsWith("1,"));
+        assertTrue(lines.get(4).startsWith("4,"));
+        Files.deleteIfExists(csv);
+    }
+
+    @Test
+    public void testGzipExportCSV() throws Exception {
+        Path gz = Paths.get("target/XX_LOG-export.csv.gz");
+        Files.deleteIfExists(gz);
+
+        CsvExporter.Options options = new CsvExporter.Options(gz.toString(), "xx_log")
+                .verbose(true)
+                .partitions(2);
+        assertEquals(4L, CsvExporter.save(ds, options));
+
+        List<String> lines;
+        try (BufferedReader reader = Compression.reader(gz)) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).startsWith("ID,"));
+
+        // Load it back by the JDBC batch import
+        Connection conn = ds.getConnection();
+        CsvImporter.load(conn, new CsvImporter.Options(gz.toString(), "xx_log")
+                .truncated(true)
+                .skip(1));
+        assertEquals(4, DaoHelper.count(conn, "xx_log"));
+        conn.close();
+        Files.deleteIfExists(gz);
+    }
+}
@@ -3,8 +3,17 @@ package net.tiny.dao;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -14,12 +23,15 @@ import javax.sql.DataSource;
 import org.junit.jupiter.api.Test;
 
 import net.tiny.dao.test.LogDao;
+import net.tiny.dao.test.entity.Log;
 import net.tiny.unit.db.Database;
 
 @Database(persistence="persistence-eclipselink.properties"
  ,trace=true
  ,before= {"create sequence xx_log_sequence increment by 1 start with 1;"
         ,"create sequence id_seq increment by 1 start with 0 NOCYCLE;"
+        ,"create table if not exists xx_parent (id int primary key, name varchar(32));"
+        ,"create table if not exists xx_child (id int primary key, parent_id int references xx_parent(id), name varchar(32));"
  }
 )
 public class CsvImporterTest {
@@ -42,6 +54,65 @@ public class CsvImporterTest {
         conn.close();
     }
 
+    @Test
+    public void testLoadBatchCSV() throws Exception {
+        CsvImporter.Options options = new CsvImporter.Options("src/test/resources/data/imports/XX_LOG.csv", "xx_log")
+                .verbose(true)
+                .truncated(true)
+                .skip(1)
+                .batch(true)
+                .batchSize(3)
+                .commitInterval(1);
+        Connection conn = ds.getConnection();
+        CsvImporter.load(conn, options);
+        assertEquals(4, DaoHelper.count(conn, "xx_log"));
+        conn.close();
+    }
+
+    @Test
+    public void testPipelinedLoadCSV() throws Exception {
+        CsvImporter.Options options = new CsvImporter.Options("src/test/resources/data/imports/XX_LOG.csv", "xx_log")
+                .verbose(true)
+                .truncated(true)
+                .skip(1)
+                .batchSize(1)
+                .writers(2);
+        CsvImporter.load(ds, options);
+        Connection conn = ds.getConnection();
+        assertEquals(4, DaoHelper.count(conn, "xx_log"));
+        conn.close();
+    }
+
+    @Test
+    public void testPipelinedLoadFailures() throws Exception {
+        Path source = Files.createTempFile("xx_log", ".csv");
+        List<String> lines = new ArrayList<>(Files.readAllLines(Paths.get("src/test/resources/data/imports/XX_LOG.csv")));
+        for (int i = 10; i < 100; i++) {
+            lines.add(String.format("\"%d\",\"2016-02-02 23:42:51.03\",\"2016-02-02 23:42:51.03\",,\"192.168.10.100\",\"op\",\"admin\",\"p\"", i));
+        }
+        Files.write(source, lines);
+        CsvImporter.Options options = new CsvImporter.Options(source.toString(), "xx_log")
+                .truncated(true)
+                .skip(1)
+                .batchSize(1)
+                .writers(2);
+        // The writers can not connect
+        SQLException error = assertThrows(SQLException.class,
+                () -> assertTimeoutPreemptively(Duration.ofSeconds(30), () -> CsvImporter.load(new FailingDataSource(ds, 2), options)));
+        assertEquals("No connection", error.getMessage());
+
+        // A malformed record in the middle of the file
+        lines.add(50, "\"200\",\"2016-02-02 23:42:51.03\"");
+        Files.write(source, lines);
+        options.commitInterval(1000);
+        assertThrows(SQLException.class,
+                () -> assertTimeoutPreemptively(Duration.ofSeconds(30), () -> CsvImporter.load(ds, options)));
+        Connection conn = ds.getConnection();
+        assertEquals(0, DaoHelper.count(conn, "xx_log"));
+        conn.close();
+        Files.delete(source);
+    }
+
     @Test
     public void testTableOrdering() throws Exception {
         List<CsvImporter.Options> options = CsvImporter.options("src/test/resources/data/imports");
@@ -52,6 +123,30 @@ public class CsvImporterTest {
         conn.close();
     }
 
+    @Test
+    public void testParallelTableLoad() throws Exception {
+        CsvImporter.load(ds, "src/test/resources/data/imports", 2);
+        Connection conn = ds.getConnection();
+        assertEquals(4, DaoHelper.count(conn, "xx_log"));
+        conn.close();
+    }
+
+    @Test
+    public void testForeignKeyLevels() throws Exception {
+        // No table ordering file, the child table is gzip compressed
+        Connection conn = ds.getConnection();
+        List<List<CsvImporter.Options>> levels = CsvImporter.levels(conn, "src/test/resources/data/levels");
+        assertEquals(2, levels.size());
+        assertEquals("XX_PARENT", levels.get(0).get(0).table);
+        assertEquals("XX_CHILD", levels.get(1).get(0).table);
+        assertTrue(Compression.gzip(levels.get(1).get(0).path));
+
+        CsvImporter.load(ds, "src/test/resources/data/levels", 2);
+        assertEquals(2, DaoHelper.count(conn, "xx_parent"));
+        assertEquals(3, DaoHelper.count(conn, "xx_child"));
+        conn.close();
+    }
+
     @Test
     public void testLoadLogCSV() throws Exception {
         assertNotNull(entityManager);
@@ -72,4 +167,92 @@ public class CsvImporterTest {
         System.out.println("Load CSV " + num);
         entityManager.getTransaction().commit();
     }
+
+    @Test
+    public void testParallelLoadLogCSV() throws Exception {
+        entityManager.getTransaction().begin();
+
+        LogDao dao = new LogDao();
+        dao.setEntityManager(entityManager);
+        CsvImporter loader = new CsvImporter.Builder(dao)
+                .path("src/test/resources/data/imports/XX_LOG.csv")
+                .table("xx_log")
+                .verbose(true)
+                .truncated(true)
+                .skip(1)
+                .parallel(2)
+                .ordered(false)
+                .build();
+
+        long num = loader.load();
+        assertEquals(4, num, "Load CSV ");
+        // The ids of the file are kept by the parser threads
+        String[] operators = {"admin", "user", "user", "admin"};
+        String[] parameters = {"phone = 800-000000", "phone = 800-123455", "phone = 800-100000", "phone = 800-200000"};
+        for (int i = 0; i < operators.length; i++) {
+            Log log = dao.find((long) (i + 1)).get();
+            assertEquals(operators[i], log.getOperator());
+            assertEquals(parameters[i], log.getParameter());
+        }
+        entityManager.getTransaction().commit();
+    }
+
+    // Serves the given number of connections
+    static class FailingDataSource implements DataSource {
+        final DataSource dataSource;
+        final AtomicInteger connections;
+
+        FailingDataSource(DataSource dataSource, int connections) {
+            this.dataSource = dataSource;
+            this.connections = new AtomicInteger(connections);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (connections.getAndDecrement() <= 0) {
+                throw new SQLException("No connection");
+            }
+            return dataSource.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return dataSource.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            dataSource.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            dataSource.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return dataSource.getLoginTimeout();
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return dataSource.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return dataSource.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return dataSource.isWrapperFor(iface);
+        }
+    }
 }
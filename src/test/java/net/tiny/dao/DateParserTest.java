@@ -0,0 +1,69 @@
+package net.tiny.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+public class DateParserTest {
+
+    @Test
+    public void testScan() throws Exception {
+        assertNotNull(DateParser.scan("2020-02-29"));
+        assertNotNull(DateParser.scan("2020/02/29"));
+        assertNotNull(DateParser.scan("20200229"));
+        assertNotNull(DateParser.scan("2020-02-29 23:59:59.1"));
+        assertNotNull(DateParser.scan("2020-02-29 23:59:59"));
+        assertNotNull(DateParser.scan("2020/02/29 23:59:59"));
+        assertNotNull(DateParser.scan("20200229235959"));
+        assertNotNull(DateParser.scan("2020-02-29T23:59:59.123Z"));
+        assertNotNull(DateParser.scan("2020-02-29T23:59:59.123+0900"));
+
+        // Other shapes or out of range fields go to the formatters
+        assertNull(DateParser.scan("2019-02-29"));
+        assertNull(DateParser.scan("2020-13-01"));
+        assertNull(DateParser.scan("2020-01-01 24:00:00"));
+        assertNull(DateParser.scan("2020/01/01 10:00:00.1"));
+        assertNull(DateParser.scan("2020-01-01T10:00:00.123"));
+        assertNull(DateParser.scan("Jan 1, 2020"));
+        assertNull(DateParser.scan(""));
+    }
+
+    @Test
+    public void testParseLocal() throws Exception {
+        assertEquals(LocalDate.of(2020, 2, 29), DateParser.parseLocalDate("2020/02/29"));
+        assertEquals(LocalDate.of(2020, 2, 29), DateParser.parseLocalDate("2020-02-29 23:59:59"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 23, 59, 59, 100000000), DateParser.parseLocalDateTime("2020-02-29 23:59:59.1"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 23, 59, 59, 123000000), DateParser.parseLocalDateTime("2020-02-29T23:59:59.123Z"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 23, 59, 59), DateParser.parseLocalDateTime("20200229235959"));
+        assertEquals(LocalTime.of(23, 59, 59), DateParser.parseLocalTime("2020/02/29 23:59:59"));
+
+        assertThrows(DateTimeParseException.class, () -> DateParser.parseLocalDateTime("2020-02-29"));
+        // Formatters resolve an invalid day of month to the last one
+        assertEquals(LocalDate.of(2019, 2, 28), DateParser.parseLocalDate("2019-02-29"));
+    }
+
+    @Test
+    public void testParseDate() throws Exception {
+        String[] values = new String[] {
+                "2020-02-29",
+                "2020/02/29",
+                "20200229",
+                "2020-02-29 23:59:59.0",
+                "2020-02-29 23:59:59",
+                "2020/02/29 23:59:59",
+                "20200229235959",
+                "2020-02-29T23:59:59.123+0900" };
+        for (int i = 0; i < values.length; i++) {
+            Date expected = new SimpleDateFormat(EntityParser.DATE_PATTERNS[i]).parse(values[i]);
+            assertEquals(expected, DateParser.parseDate(values[i]), values[i]);
+        }
+        assertThrows(ParseException.class, () -> DateParser.parseDate("2020.02.29"));
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.persistence.Transient;
@@ -29,6 +30,76 @@ public class EntityParserTest {
         assertEquals(BeanType.ipv6, bean.getType());
     }
 
+    @Test
+    public void testParseMapBinder() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("id", "1");
+        params.put("name", "Tom");
+
+        EntityParser parser = new EntityParser();
+        TestBean2 bean = parser.parse(TestBean2.class, params);
+        EntityParser.Binder binder = parser.binder;
+        assertNotNull(binder);
+        assertNull(bean.getTags());
+
+        params.put("id", "2");
+        bean = parser.parse(TestBean2.class, params);
+        assertSame(binder, parser.binder);
+        assertEquals(new Integer(2), bean.getId());
+
+        params.put("tags", "a");
+        assertThrows(NoSuchMethodException.class, () -> parser.parse(TestBean2.class, params));
+    }
+
+    @Test
+    public void testBindingBenchmark() throws Exception {
+        final String[] names = new String[] {"id", "name", "value", "type"};
+        final int rows = 200000;
+        String[][] records = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            records[i] = new String[] {String.valueOf(i), "name" + i, (i % 10 == 0) ? "null" : "value", String.valueOf(i % 2)};
+        }
+        EntityParser parser = new EntityParser(TestBean1.class, names, true);
+        EntityParser.ColumnField[] fields = EntityParser.findColumnFields(TestBean1.class, names.clone());
+
+        // Warm up both paths
+        for (int i = 0; i < 10000; i++) {
+            parser.parse(TestBean1.class, records[i], null);
+            reflect(parser, fields, records[i]);
+        }
+
+        long st = System.nanoTime();
+        TestBean1[] compiled = new TestBean1[rows];
+        for (int i = 0; i < rows; i++) {
+            compiled[i] = parser.parse(TestBean1.class, records[i], null);
+        }
+        long binding = System.nanoTime() - st;
+
+        st = System.nanoTime();
+        TestBean1[] reflected = new TestBean1[rows];
+        for (int i = 0; i < rows; i++) {
+            reflected[i] = reflect(parser, fields, records[i]);
+        }
+        long reflection = System.nanoTime() - st;
+
+        System.out.println(String.format("[Binding] %1$d rows compiled: %2$dms, reflection: %3$dms",
+                rows, binding / 1000000L, reflection / 1000000L));
+        for (int i = 0; i < rows; i++) {
+            assertEquals(reflected[i].toString(), compiled[i].toString());
+        }
+        assertNull(compiled[10].getValue());
+        assertEquals(BeanType.ipv6, compiled[11].getType());
+    }
+
+    // Per-value reflective path: setAccessible, type dispatch and Field.set on every value
+    private static TestBean1 reflect(EntityParser parser, EntityParser.ColumnField[] fields, String[] values) throws Exception {
+        TestBean1 bean = new TestBean1();
+        for (int i = 0; i < fields.length; i++) {
+            parser.setFieldValue(bean, fields[i].getField(), values[i]);
+        }
+        return bean;
+    }
+
     public static enum BeanType {
         ipv4,
         ipv6
@@ -99,5 +170,19 @@ public class EntityParserTest {
         }
     }
 
+    public static class TestBean2 extends AbstractBean {
+        @Transient
+        private static final long serialVersionUID = 1L;
+
+        private List<String> tags;
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
 
 }
@@ -3,8 +3,10 @@ package net.tiny.dao;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class PageTest {
@@ -44,6 +46,76 @@ public class PageTest {
         }
     }
 
+    @Test
+    public void testKeysetCursor() throws Exception {
+        List<Order> orders = new ArrayList<>();
+        orders.add(Order.desc("createDate"));
+        orders.add(Order.asc("id"));
+        LocalDateTime date = LocalDateTime.of(2020, 2, 29, 23, 59, 59, 123456789);
+        String cursor = Keyset.encode(orders, new Object[] {date, 1234L});
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+        Object[] values = Keyset.decode(cursor, orders, new Class<?>[] {LocalDateTime.class, Long.class});
+        assertEquals(date, values[0]);
+        assertEquals(1234L, values[1]);
+
+        String nulls = Keyset.encode(orders, new Object[] {null, 1234L});
+        values = Keyset.decode(nulls, orders, new Class<?>[] {LocalDateTime.class, Long.class});
+        assertNull(values[0]);
+        assertEquals(1234L, values[1]);
+
+        // A cursor of other orders
+        orders.set(0, Order.asc("createDate"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Keyset.decode(cursor, orders, new Class<?>[] {LocalDateTime.class, Long.class}));
+        assertThrows(IllegalArgumentException.class,
+                () -> Keyset.decode("!" + cursor, orders, new Class<?>[] {LocalDateTime.class, Long.class}));
+
+        Pageable pageable = new Pageable(1, 10);
+        assertFalse(pageable.isKeyset());
+        pageable.setCursor(cursor);
+        assertTrue(pageable.isKeyset());
+        Page<String> page = new Page<>(new ArrayList<>(), 0L, pageable, cursor);
+        assertEquals(cursor, page.getCursor());
+    }
+
+    @Test
+    public void testLazyTotal() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Page<String> page = new Page<>(new ArrayList<>(), () -> {
+            calls.incrementAndGet();
+            return 57L;
+        }, new Pageable(1, 10), null);
+        assertEquals(0, calls.get());
+        assertEquals(6, page.getTotalPages());
+        assertEquals(57L, page.getTotal());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testCountCacheKey() throws Exception {
+        Pageable pageable1 = new Pageable(1, 10);
+        pageable1.getFilters().add(Filter.eq("operator", "user"));
+        pageable1.getFilters().add(Filter.gt("id", 10L));
+        Pageable pageable2 = new Pageable(5, 20);
+        pageable2.getFilters().add(Filter.gt("id", 10L));
+        pageable2.getFilters().add(Filter.eq("operator", "user"));
+        assertEquals(CountCache.key(pageable1), CountCache.key(pageable2));
+        pageable2.setSearchProperty("ip");
+        pageable2.setSearchValue("192.168");
+        assertNotEquals(CountCache.key(pageable1), CountCache.key(pageable2));
+
+        long generation = CountCache.generation(String.class);
+        CountCache.put(String.class, CountCache.key(pageable1), generation, 57L, 60000L);
+        assertEquals(57L, CountCache.get(String.class, CountCache.key(pageable1)));
+        CountCache.invalidate(String.class);
+        assertNull(CountCache.get(String.class, CountCache.key(pageable1)));
+        // Counted before the write
+        CountCache.put(String.class, CountCache.key(pageable1), generation, 57L, 60000L);
+        assertNull(CountCache.get(String.class, CountCache.key(pageable1)));
+        CountCache.put(String.class, CountCache.key(pageable1), CountCache.generation(String.class), 57L, -1L);
+        assertNull(CountCache.get(String.class, CountCache.key(pageable1)));
+    }
+
     @Test
     public void testLastSegment() throws Exception {
         List<Integer> segment;
@@ -0,0 +1,94 @@
+package net.tiny.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+
+public class ParallelSeparatedIteratorTest {
+
+    @Test
+    public void testBoundaries() throws Exception {
+        Path csv = Files.createTempFile("boundaries", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("id,name\r\n");
+            sb.append("1,\"a\r\nb\"\r\n");
+            sb.append("2,\"c,\\\"\nd\"\r\n");
+            sb.append("3,e\r\n");
+            Files.write(csv, sb.toString().getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+                // Cut as soon as possible, never inside a quoted value
+                long[] bounds = ParallelSeparatedIterator.boundaries(channel, 1, 1L, (byte)',');
+                assertArrayEquals(new long[] {9L, 19L, 31L, 36L}, bounds);
+                bounds = ParallelSeparatedIterator.boundaries(channel, 0, 1000L, (byte)',');
+                assertArrayEquals(new long[] {0L, 36L}, bounds);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Test
+    public void testParallelParse() throws Exception {
+        Path csv = Files.createTempFile("parallel", ".csv");
+        final int rows = 50000;
+        try {
+            try (Writer writer = Files.newBufferedWriter(csv)) {
+                writer.write("id,name,value\r\n");
+                for (int i = 1; i <= rows; i++) {
+                    writer.write(String.format("%d,\"name,%d\r\nline\",value-%d padding text for a larger file\r\n", i, i, i));
+                }
+            }
+            Map<String, Set<ConstraintViolation<?>>> errors = new HashMap<>();
+            ParallelSeparatedIterator<Item> it = ParallelSeparatedIterator.parse(csv, Item.class, SeparatedValues.Type.CSV, 1, errors, 4, true);
+            assertTrue(it.getChunks() > 1);
+            long expected = 1L;
+            while (it.hasNext()) {
+                Item item = it.next();
+                assertEquals(expected, item.id.longValue());
+                assertEquals("name," + expected + "\nline", item.name);
+                expected++;
+            }
+            assertEquals(rows + 1L, expected);
+            assertTrue(errors.isEmpty());
+            it.close();
+
+            it = ParallelSeparatedIterator.parse(csv, Item.class, SeparatedValues.Type.CSV, 1, null, 4, false);
+            Set<Long> ids = new HashSet<>();
+            List<Item> list = new ArrayList<>();
+            while (it.hasNext()) {
+                Item item = it.next();
+                ids.add(item.id);
+                list.add(item);
+            }
+            assertEquals(rows, ids.size());
+            assertEquals(rows, list.size());
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    public static class Item {
+        private Long id;
+        private String name;
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.tiny.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SeparatedTokenizerTest {
+
+    @Test
+    public void testNextRecord() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("foo,hoge,\r\n");
+        sb.append("foo,,\"bar,baz\"\r\n");
+        sb.append("foo,\"bar\r\nbaz\",hoge\r\n");
+        sb.append("foo,\"bar\\\"baz\",hoge\n");
+        sb.append("\n");
+        sb.append("last");
+        // Small buffer to break records and CR+LF in the middle
+        for (int size : new int[] {16, 17, 18, 19, 20, 8192}) {
+            SeparatedTokenizer tokenizer = new SeparatedTokenizer(new StringReader(sb.toString()), ',', size).raw(true);
+            List<String[]> records = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            while (tokenizer.next()) {
+                records.add(tokenizer.toArray());
+                lines.add(tokenizer.line());
+            }
+            assertEquals(6, records.size());
+            assertArrayEquals(new String[] {"foo", "hoge", ""}, records.get(0));
+            assertArrayEquals(new String[] {"foo", "", "bar,baz"}, records.get(1));
+            assertArrayEquals(new String[] {"foo", "bar\nbaz", "hoge"}, records.get(2));
+            assertArrayEquals(new String[] {"foo", "bar\"baz", "hoge"}, records.get(3));
+            assertArrayEquals(new String[] {""}, records.get(4));
+            assertArrayEquals(new String[] {"last"}, records.get(5));
+            assertEquals("foo,\"bar\nbaz\",hoge", lines.get(2));
+            assertEquals("last", lines.get(5));
+            assertEquals(7L, tokenizer.getRow());
+        }
+    }
+
+    @Test
+    public void testSlice() throws Exception {
+        SeparatedTokenizer tokenizer = new SeparatedTokenizer(new StringReader("12\t\"a\tb\"\r\n345\tc"), SeparatedValues.Type.TSV);
+        assertTrue(tokenizer.next());
+        assertEquals(2, tokenizer.size());
+        CharSequence id = tokenizer.slice(0);
+        assertEquals(2, id.length());
+        assertEquals('1', id.charAt(0));
+        assertEquals("a\tb", tokenizer.get(1));
+        assertEquals("12\t\"a\tb\"", tokenizer.line());
+
+        assertTrue(tokenizer.next());
+        // Same slice instance reflects the current record
+        assertSame(id, tokenizer.slice(0));
+        assertEquals("345", id.toString());
+        assertEquals("c", tokenizer.slice(1).toString());
+        assertFalse(tokenizer.next());
+        assertEquals(0, tokenizer.size());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        SeparatedTokenizer tokenizer = new SeparatedTokenizer(new StringReader(""), ',');
+        assertFalse(tokenizer.next());
+        tokenizer = new SeparatedTokenizer(new StringReader("a,b\r\n"), ',');
+        assertTrue(tokenizer.next());
+        assertEquals(2, tokenizer.size());
+        assertFalse(tokenizer.next());
+    }
+}